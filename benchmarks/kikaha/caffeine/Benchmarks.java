@@ -0,0 +1,19 @@
+package kikaha.caffeine;
+
+import kikaha.core.cdi.CDI;
+import kikaha.core.cdi.DefaultCDI;
+
+/**
+ * Shared bootstrap for the JMH benchmarks. It starts a plain Kikaha CDI context,
+ * so the benchmarked beans are wired exactly as they are on a running application.
+ */
+final class Benchmarks {
+
+    static final CDI cdi = new DefaultCDI();
+
+    private Benchmarks(){}
+
+    static <T> T load( Class<T> clazz ) {
+        return cdi.load( clazz );
+    }
+}
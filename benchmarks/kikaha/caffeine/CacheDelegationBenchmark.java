@@ -0,0 +1,101 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.*;
+import org.openjdk.jmh.annotations.*;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Compares the caches produced by {@link CacheProducer} against raw Caffeine caches
+ * built with the same configuration. As the producer hands out the Caffeine caches
+ * themselves, both sides are expected to perform alike.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CacheDelegationBenchmark {
+
+    static final int ENTRIES = 1 << 12;
+    static final int MASK = ENTRIES - 1;
+
+    final Integer[] keys = new Integer[ ENTRIES ];
+
+    ProducedCaches produced;
+    Cache<Integer, Integer> rawCache;
+    LoadingCache<Integer, Integer> rawLoadingCache;
+    AsyncLoadingCache<Integer, Integer> rawAsyncLoadingCache;
+
+    @Setup
+    public void populateCaches(){
+        produced = Benchmarks.load( ProducedCaches.class );
+        rawCache = Caffeine.newBuilder().build();
+        rawLoadingCache = Caffeine.newBuilder().build( k -> null );
+        rawAsyncLoadingCache = Caffeine.newBuilder().buildAsync( k -> null );
+
+        for ( int i = 0; i < ENTRIES; i++ ) {
+            keys[i] = i;
+            produced.cache.put( keys[i], i );
+            produced.loadingCache.put( keys[i], i );
+            produced.asyncLoadingCache.put( keys[i], completedFuture( i ) );
+            rawCache.put( keys[i], i );
+            rawLoadingCache.put( keys[i], i );
+            rawAsyncLoadingCache.put( keys[i], completedFuture( i ) );
+        }
+    }
+
+    Integer nextKey(){
+        return keys[ ThreadLocalRandom.current().nextInt() & MASK ];
+    }
+
+    @Benchmark
+    public Integer producedCache() {
+        return produced.cache.getIfPresent( nextKey() );
+    }
+
+    @Benchmark
+    public Integer rawCache() {
+        return rawCache.getIfPresent( nextKey() );
+    }
+
+    @Benchmark
+    public Integer producedLoadingCache() {
+        return produced.loadingCache.get( nextKey() );
+    }
+
+    @Benchmark
+    public Integer rawLoadingCache() {
+        return rawLoadingCache.get( nextKey() );
+    }
+
+    @Benchmark
+    public CompletableFuture<Integer> producedAsyncLoadingCache() {
+        return produced.asyncLoadingCache.get( nextKey() );
+    }
+
+    @Benchmark
+    public CompletableFuture<Integer> rawAsyncLoadingCache() {
+        return rawAsyncLoadingCache.get( nextKey() );
+    }
+
+    @Singleton
+    public static class ProducedCaches {
+
+        @Inject @Named("benchmark-cache")
+        Cache<Integer, Integer> cache;
+
+        @Inject @Named("benchmark-loading-cache")
+        LoadingCache<Integer, Integer> loadingCache;
+
+        @Inject @Named("benchmark-async-loading-cache")
+        AsyncLoadingCache<Integer, Integer> asyncLoadingCache;
+    }
+}
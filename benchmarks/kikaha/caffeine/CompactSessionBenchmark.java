@@ -0,0 +1,51 @@
+package kikaha.caffeine;
+
+import kikaha.core.modules.security.DefaultSession;
+import kikaha.core.modules.security.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU side of the session storage modes: the cost of compacting a session on
+ * {@code flush} and of inflating it back on access. The memory side is printed on setup,
+ * as estimated by {@link MemoryEstimatingWeigher}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CompactSessionBenchmark {
+
+    @Param({ "5", "50" })
+    int attributes;
+
+    @Param({ "false", "true" })
+    boolean compress;
+
+    Session session;
+    CompactSession compacted;
+
+    @Setup
+    public void createSession(){
+        session = new DefaultSession( "benchmark" );
+        for ( int i = 0; i < attributes; i++ )
+            session.setAttribute( "attribute-" + i, "some value for the attribute " + i );
+        compacted = CompactSession.of( session, compress );
+
+        final MemoryEstimatingWeigher weigher = new MemoryEstimatingWeigher();
+        System.out.println( "\nobjects: " + weigher.estimate( session ) + " bytes, "
+                + ( compress ? "compressed" : "serialized" ) + ": " + weigher.estimate( compacted ) + " bytes" );
+    }
+
+    @Benchmark
+    public CompactSession compact() {
+        return CompactSession.of( session, compress );
+    }
+
+    @Benchmark
+    public Session inflate() {
+        return compacted.inflate();
+    }
+}
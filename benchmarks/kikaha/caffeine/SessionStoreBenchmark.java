@@ -0,0 +1,96 @@
+package kikaha.caffeine;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import kikaha.core.modules.security.DefaultSession;
+import kikaha.core.modules.security.Session;
+import kikaha.core.modules.security.SessionCookie;
+import kikaha.core.test.HttpServerExchangeStub;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the {@link CaffeineSessionStore} hot paths with a configurable hit ratio.
+ * Run it with {@code -t <threads>} to see how it scales with concurrency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SessionStoreBenchmark {
+
+    static final int STORED_SESSIONS = 1 << 16;
+
+    @Param({ "100", "90", "50" })
+    int hitRatio;
+
+    CaffeineSessionStore sessionStore;
+    SessionCookie sessionIdManager;
+    Session[] storedSessions;
+
+    final AtomicLong missedSessionIds = new AtomicLong();
+
+    @Setup
+    public void populateSessionStore(){
+        sessionStore = Benchmarks.load( CaffeineSessionStore.class );
+        sessionIdManager = Benchmarks.load( SessionCookie.class );
+        sessionStore.sessionCache.invalidateAll();
+
+        storedSessions = new Session[ STORED_SESSIONS ];
+        for ( int i = 0; i < STORED_SESSIONS; i++ ) {
+            storedSessions[i] = new DefaultSession( "stored-" + i );
+            sessionStore.storeSession( storedSessions[i].getId(), storedSessions[i] );
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Exchanges {
+
+        HttpServerExchange[] hits;
+
+        @Setup
+        public void createExchanges(){
+            hits = new HttpServerExchange[ STORED_SESSIONS ];
+            for ( int i = 0; i < STORED_SESSIONS; i++ )
+                hits[i] = createExchange( "stored-" + i );
+        }
+    }
+
+    @Benchmark
+    public Session createOrRetrieveSession( Exchanges exchanges ) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        if ( random.nextInt( 100 ) < hitRatio )
+            return sessionStore.createOrRetrieveSession( exchanges.hits[ random.nextInt( STORED_SESSIONS ) ], sessionIdManager );
+
+        // misses are invalidated right away, otherwise the cache would grow along with the benchmark
+        final HttpServerExchange exchange = createExchange( "missed-" + missedSessionIds.incrementAndGet() );
+        final Session session = sessionStore.createOrRetrieveSession( exchange, sessionIdManager );
+        sessionStore.invalidateSession( session );
+        return session;
+    }
+
+    @Benchmark
+    public Session getSessionFromCache() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int index = random.nextInt( STORED_SESSIONS );
+        final String sessionId = random.nextInt( 100 ) < hitRatio ? storedSessions[index].getId() : "missed-" + index;
+        return sessionStore.getSessionFromCache( sessionId );
+    }
+
+    @Benchmark
+    public Session flush() {
+        final Session session = storedSessions[ ThreadLocalRandom.current().nextInt( STORED_SESSIONS ) ];
+        sessionStore.flush( session );
+        return session;
+    }
+
+    static HttpServerExchange createExchange( String sessionId ){
+        final HttpServerExchange exchange = HttpServerExchangeStub.createHttpExchange();
+        exchange.getRequestHeaders().put( Headers.COOKIE, "JSESSIONID=" + sessionId );
+        return exchange;
+    }
+}
@@ -0,0 +1,122 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays an {@link AccessTrace} recorded with {@code server.cache.<name>.trace.file} against
+ * candidate configurations and reports the hit ratio of each of them. Reads of absent keys count
+ * as misses and load the key, as a {@code LoadingCache} would. Every combination of the given
+ * values is simulated in a single pass over the trace:
+ * <pre>
+ * mvn -P benchmark test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=kikaha.caffeine.TraceSimulator \
+ *     -Dexec.args="session-cache.trace 10000,50000,100000 0,300 0"
+ * </pre>
+ * Arguments: the trace file, maximum sizes, expiration times after access (seconds) and
+ * expiration times after write (seconds). Zero disables the setting.
+ */
+public class TraceSimulator {
+
+    public static void main( String[] args ) throws IOException {
+        if ( args.length < 2 ) {
+            System.err.println( "Usage: TraceSimulator <trace-file> <maximum-sizes> [time-after-access-seconds] [time-after-write-seconds]" );
+            System.exit( 1 );
+        }
+
+        final List<Candidate> candidates = new ArrayList<>();
+        for ( final long size : parse( args[1] ) )
+            for ( final long afterAccess : parse( args.length > 2 ? args[2] : "0" ) )
+                for ( final long afterWrite : parse( args.length > 3 ? args[3] : "0" ) )
+                    candidates.add( new Candidate( size, afterAccess, afterWrite ) );
+
+        final long events = simulate( Paths.get( args[0] ), candidates );
+        System.out.println( "Replayed " + events + " events" );
+        for ( final Candidate candidate : candidates )
+            System.out.println( candidate );
+    }
+
+    static long simulate( Path trace, List<Candidate> candidates ) throws IOException {
+        final long[] now = new long[1];
+        for ( final Candidate candidate : candidates )
+            candidate.build( () -> now[0] );
+
+        return AccessTrace.replay( trace, record -> {
+            now[0] = TimeUnit.MILLISECONDS.toNanos( AccessTrace.millisOf( record ) );
+            final AccessTrace.Event event = AccessTrace.eventOf( record );
+            final int keyHash = AccessTrace.keyHashOf( record );
+            for ( final Candidate candidate : candidates )
+                candidate.replay( event, keyHash );
+        });
+    }
+
+    private static long[] parse( String values ) {
+        final String[] split = values.split( "," );
+        final long[] parsed = new long[ split.length ];
+        for ( int i = 0; i < split.length; i++ )
+            parsed[i] = Long.parseLong( split[i].trim() );
+        return parsed;
+    }
+
+    static class Candidate {
+
+        final long maximumSize, timeAfterAccess, timeAfterWrite;
+        long hits, misses;
+        Cache<Integer, Boolean> cache;
+
+        Candidate( long maximumSize, long timeAfterAccess, long timeAfterWrite ) {
+            this.maximumSize = maximumSize;
+            this.timeAfterAccess = timeAfterAccess;
+            this.timeAfterWrite = timeAfterWrite;
+        }
+
+        void build( Ticker ticker ) {
+            final Caffeine<Object, Object> builder = Caffeine.newBuilder().ticker( ticker ).executor( Runnable::run );
+            if ( maximumSize > 0 ) builder.maximumSize( maximumSize );
+            if ( timeAfterAccess > 0 ) builder.expireAfterAccess( timeAfterAccess, TimeUnit.SECONDS );
+            if ( timeAfterWrite > 0 ) builder.expireAfterWrite( timeAfterWrite, TimeUnit.SECONDS );
+            cache = builder.build();
+        }
+
+        void replay( AccessTrace.Event event, int keyHash ) {
+            switch ( event ) {
+                case READ:
+                    if ( cache.getIfPresent( keyHash ) != null )
+                        hits++;
+                    else {
+                        misses++;
+                        cache.put( keyHash, Boolean.TRUE );
+                    }
+                    break;
+                case WRITE:
+                    cache.put( keyHash, Boolean.TRUE );
+                    break;
+                case REMOVE:
+                    cache.invalidate( keyHash );
+                    break;
+                case CLEAR:
+                    cache.invalidateAll();
+                    break;
+            }
+        }
+
+        double hitRatio() {
+            final long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format( "maximum-size=%d time-after-access=%ds time-after-write=%ds hit-ratio=%.2f%% (%d hits, %d misses)",
+                    maximumSize, timeAfterAccess, timeAfterWrite, hitRatio() * 100, hits, misses );
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import kikaha.core.modules.security.DefaultSession;
+import kikaha.core.modules.security.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what {@link MemoryEstimatingWeigher} adds to the write path: sessions are put into a
+ * cache bounded by {@code maximum-size} and into one bounded by {@code maximum-weight}, whose
+ * entries are weighed on every write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WeigherBenchmark {
+
+    static final int ENTRIES = 1 << 12;
+    static final int MASK = ENTRIES - 1;
+
+    @Param({ "5", "50" })
+    int attributes;
+
+    final Session[] sessions = new Session[ ENTRIES ];
+
+    Cache<String, Session> boundedBySize;
+    Cache<String, Session> boundedByWeight;
+
+    @Setup
+    public void createSessions(){
+        for ( int i = 0; i < ENTRIES; i++ ) {
+            sessions[i] = new DefaultSession( String.valueOf( i ) );
+            for ( int a = 0; a < attributes; a++ )
+                sessions[i].setAttribute( "attribute-" + a, "some value for the attribute " + a );
+        }
+
+        boundedBySize = Caffeine.newBuilder().maximumSize( ENTRIES ).build();
+        boundedByWeight = Caffeine.newBuilder().maximumWeight( Long.MAX_VALUE )
+                .weigher( new MemoryEstimatingWeigher() ).build();
+    }
+
+    Session nextSession(){
+        return sessions[ ThreadLocalRandom.current().nextInt() & MASK ];
+    }
+
+    @Benchmark
+    public void putBoundedBySize() {
+        final Session session = nextSession();
+        boundedBySize.put( session.getId(), session );
+    }
+
+    @Benchmark
+    public void putBoundedByWeight() {
+        final Session session = nextSession();
+        boundedByWeight.put( session.getId(), session );
+    }
+}
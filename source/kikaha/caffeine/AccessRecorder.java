@@ -0,0 +1,20 @@
+package kikaha.caffeine;
+
+/**
+ * Observes the accesses to a cache wrapped by {@link TracedCache}, {@link TracedLoadingCache} or
+ * {@link TracedAsyncLoadingCache}. Called on the callers' threads, so implementations should hand
+ * the work off as cheaply as possible.
+ */
+interface AccessRecorder {
+
+    void record( AccessTrace.Event event, Object key );
+
+    static AccessRecorder both( AccessRecorder first, AccessRecorder second ) {
+        if ( first == null ) return second;
+        if ( second == null ) return first;
+        return (event, key) -> {
+            first.record( event, key );
+            second.record( event, key );
+        };
+    }
+}
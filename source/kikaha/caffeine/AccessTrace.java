@@ -0,0 +1,75 @@
+package kikaha.caffeine;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongConsumer;
+
+/**
+ * The binary format of the access traces written by {@link AccessTraceRecorder}. A trace starts
+ * with {@link #MAGIC} and {@link #VERSION}, followed by one {@code long} per event: the hash of the
+ * key on the 32 higher bits, the milliseconds since the trace started on the next 29 bits, and the
+ * {@link Event} on the 3 lower bits. Traces longer than about six days keep the last timestamp.
+ */
+final class AccessTrace {
+
+    static final int MAGIC = 0x4b435452, VERSION = 1;
+    static final long MAX_MILLIS = (1L << 29) - 1;
+
+    enum Event { READ, WRITE, REMOVE, CLEAR }
+
+    private static final Event[] EVENTS = Event.values();
+
+    private AccessTrace() {}
+
+    /**
+     * @return the event encoded as a non-zero {@code long}
+     */
+    static long encode( Event event, int keyHash, long millis ) {
+        return ( (long) keyHash << 32 ) | ( Math.min( millis, MAX_MILLIS ) << 3 ) | ( event.ordinal() + 1 );
+    }
+
+    static int keyHashOf( long record ) {
+        return (int) ( record >>> 32 );
+    }
+
+    static long millisOf( long record ) {
+        return ( record >>> 3 ) & MAX_MILLIS;
+    }
+
+    static Event eventOf( long record ) {
+        return EVENTS[ (int) ( record & 7 ) - 1 ];
+    }
+
+    static int hashOf( Object key ) {
+        final int hash = key.hashCode();
+        return hash ^ ( hash >>> 16 );
+    }
+
+    /**
+     * Calls {@code consumer} with every event of the trace {@code file}, in the order they were recorded.
+     *
+     * @return the number of events read
+     */
+    static long replay( Path file, LongConsumer consumer ) throws IOException {
+        try ( final DataInputStream input = new DataInputStream( new BufferedInputStream( Files.newInputStream( file ), 1 << 16 ) ) ) {
+            if ( input.readInt() != MAGIC )
+                throw new IOException( file + " is not an access trace" );
+            final int version = input.readInt();
+            if ( version != VERSION )
+                throw new IOException( "Unsupported access trace version: " + version );
+
+            long events = 0;
+            while ( true ) {
+                final long record;
+                try {
+                    record = input.readLong();
+                } catch ( EOFException end ) {
+                    return events;
+                }
+                consumer.accept( record );
+                events++;
+            }
+        }
+    }
+}
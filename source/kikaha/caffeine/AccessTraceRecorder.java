@@ -0,0 +1,115 @@
+package kikaha.caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records cache accesses into an {@link AccessTrace} file. Callers only claim a slot of a lock-free
+ * ring buffer and store the encoded event there, while a background thread drains the buffer into
+ * the file. When the buffer is full events are dropped instead of slowing the callers down.
+ */
+@Slf4j
+class AccessTraceRecorder implements AccessRecorder, AutoCloseable {
+
+    final Path file;
+    final LongAdder dropped = new LongAdder();
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private volatile boolean running = true;
+    private final long startedAt = System.nanoTime();
+    private final DataOutputStream output;
+    private final Thread drainer;
+
+    AccessTraceRecorder( Path file, int bufferSize ) throws IOException {
+        final int capacity = Integer.highestOneBit( Math.max( 2, bufferSize - 1 ) ) << 1;
+        this.file = file;
+        this.slots = new AtomicLongArray( capacity );
+        this.mask = capacity - 1;
+        this.output = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( file ), 1 << 16 ) );
+        output.writeInt( AccessTrace.MAGIC );
+        output.writeInt( AccessTrace.VERSION );
+
+        drainer = new Thread( this::drainContinuously, "cache-trace-" + file.getFileName() );
+        drainer.setDaemon( true );
+        drainer.start();
+    }
+
+    @Override
+    public void record( AccessTrace.Event event, Object key ) {
+        final int keyHash = key == null ? 0 : AccessTrace.hashOf( key );
+        final long record = AccessTrace.encode( event, keyHash, TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startedAt ) );
+
+        long claimed;
+        do {
+            claimed = tail.get();
+            if ( claimed - head > mask ) {
+                dropped.increment();
+                return;
+            }
+        } while ( !tail.compareAndSet( claimed, claimed + 1 ) );
+        slots.lazySet( (int) ( claimed & mask ), record );
+    }
+
+    private void drainContinuously() {
+        try {
+            while ( running )
+                if ( drain() == 0 ) {
+                    output.flush();
+                    LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos( 1 ) );
+                }
+            drain();
+            output.flush();
+        } catch ( IOException cause ) {
+            running = false;
+            log.error( "Could not write the access trace " + file + ". Tracing stopped.", cause );
+        }
+    }
+
+    /**
+     * Writes the events published so far. Stops at the first claimed slot whose event was not stored yet.
+     */
+    private int drain() throws IOException {
+        int drained = 0;
+        long position = head;
+        while ( true ) {
+            final int index = (int) ( position & mask );
+            final long record = slots.get( index );
+            if ( record == 0 )
+                break;
+            output.writeLong( record );
+            slots.lazySet( index, 0 );
+            head = ++position;
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Writes the pending events and closes the trace file.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            drainer.join();
+        } catch ( InterruptedException cause ) {
+            Thread.currentThread().interrupt();
+        }
+        output.close();
+        if ( dropped.sum() > 0 )
+            log.warn( "Dropped " + dropped.sum() + " events of the access trace " + file + ": consider a larger trace.buffer-size" );
+    }
+}
@@ -0,0 +1,214 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Resizes the maximum size (or weight) of the registered caches according to the heap occupancy.
+ * Once the heap is above the {@code highWatermark} every cache shrinks by {@code shrinkRatio},
+ * down to its minimum. Below the {@code lowWatermark}, caches that are full and had misses since
+ * the last check grow by {@code growRatio}, up to their maximum. Caches that do not record stats
+ * grow whenever they are full.
+ * <p>
+ * The heap is checked periodically and right after every garbage collection. After a collection,
+ * its occupancy is the memory the collection left in use; periodic checks only count the tenured
+ * pools. Either way, short-lived garbage does not shrink caches. Caches shrink at most once per
+ * {@code shrinkIntervalInMillis}, no matter how many collections happen meanwhile.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class AdaptiveSizing implements AutoCloseable {
+
+    static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+    static final double FULL = 0.9;
+
+    final double lowWatermark, highWatermark, shrinkRatio, growRatio;
+    final long shrinkIntervalInMillis;
+    private final DoubleSupplier heapOccupancy;
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+    private final NotificationListener gcListener = (notification, handback) -> {
+        if ( GC_NOTIFICATION.equals( notification.getType() ) )
+            scheduleAdjustment( occupancyAfter( GarbageCollectionNotificationInfo.from( (CompositeData) notification.getUserData() ) ) );
+    };
+    private ScheduledExecutorService scheduler;
+    private boolean hasShrunk;
+    private long lastShrinkAt;
+
+    /**
+     * Starts checking the heap every {@code intervalInMillis} and after garbage collections.
+     */
+    synchronized void start( long intervalInMillis ) {
+        if ( scheduler != null )
+            return;
+        scheduler = Executors.newSingleThreadScheduledExecutor( CacheExecutors.daemonThreadsNamed( "adaptive-sizing" ) );
+        scheduler.scheduleWithFixedDelay( this::adjust, intervalInMillis, intervalInMillis, TimeUnit.MILLISECONDS );
+        for ( final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() )
+            if ( collector instanceof NotificationEmitter )
+                ((NotificationEmitter) collector).addNotificationListener( gcListener, null, null );
+    }
+
+    @Override
+    public synchronized void close() {
+        if ( scheduler == null )
+            return;
+        for ( final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() )
+            if ( collector instanceof NotificationEmitter )
+                try {
+                    ((NotificationEmitter) collector).removeNotificationListener( gcListener );
+                } catch ( Exception ignored ) { }
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    private synchronized void scheduleAdjustment( double occupancy ) {
+        if ( scheduler != null )
+            scheduler.execute( () -> adjustSafely( occupancy ) );
+    }
+
+    /**
+     * Makes the maximum of {@code cache} follow the heap occupancy, within {@code minimum} and {@code maximum}.
+     *
+     * @return {@code false} if the cache is not bounded by size or weight, thus could not be registered
+     */
+    boolean register( String name, Cache<?, ?> cache, long minimum, long maximum ) {
+        final Policy.Eviction<?, ?> eviction = cache.policy().eviction().orElse( null );
+        if ( eviction == null )
+            return false;
+        targets.put( name, new Target( name, cache, eviction, minimum, maximum ) );
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the cache was registered
+     */
+    synchronized boolean unregister( String name ) {
+        return targets.remove( name ) != null;
+    }
+
+    void adjust() {
+        try {
+            adjust( heapOccupancy.getAsDouble() );
+        } catch ( Exception cause ) {
+            log.error( "Could not resize caches", cause );
+        }
+    }
+
+    private void adjustSafely( double occupancy ) {
+        try {
+            adjust( occupancy );
+        } catch ( Exception cause ) {
+            log.error( "Could not resize caches", cause );
+        }
+    }
+
+    synchronized void adjust( double occupancy ) {
+        final long now = System.nanoTime();
+        final boolean mayShrink = !hasShrunk || now - lastShrinkAt >= TimeUnit.MILLISECONDS.toNanos( shrinkIntervalInMillis );
+        boolean shrunk = false;
+        for ( final Target target : targets.values() )
+            shrunk |= target.adjust( occupancy, mayShrink );
+        if ( shrunk ) {
+            hasShrunk = true;
+            lastShrinkAt = now;
+        }
+    }
+
+    /**
+     * @return the fraction of the maximum heap held by its tenured pools, or by the whole heap when
+     *         they could not be told apart. Young generation pools are left out as they are mostly garbage.
+     */
+    static double measureHeapOccupancy() {
+        long used = 0;
+        for ( final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+            if ( isTenured( pool ) )
+                used += pool.getUsage().getUsed();
+        if ( used == 0 )
+            used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        return (double) used / maxHeap();
+    }
+
+    /**
+     * @return the fraction of the maximum heap still in use after the garbage collection {@code info} describes
+     */
+    static double occupancyAfter( GarbageCollectionNotificationInfo info ) {
+        final Map<String, MemoryUsage> usageAfterCollection = info.getGcInfo().getMemoryUsageAfterGc();
+        long used = 0;
+        for ( final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+            final MemoryUsage usage = pool.getType() == MemoryType.HEAP ? usageAfterCollection.get( pool.getName() ) : null;
+            if ( usage != null )
+                used += usage.getUsed();
+        }
+        return (double) used / maxHeap();
+    }
+
+    /**
+     * Only the tenured pools of the HotSpot collectors support usage thresholds.
+     */
+    private static boolean isTenured( MemoryPoolMXBean pool ) {
+        return pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported();
+    }
+
+    private static long maxHeap() {
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+    }
+
+    @RequiredArgsConstructor
+    private class Target {
+
+        final String name;
+        final Cache<?, ?> cache;
+        final Policy.Eviction<?, ?> eviction;
+        final long minimum, maximum;
+        long lastMisses;
+
+        /**
+         * @return whether the cache shrunk
+         */
+        boolean adjust( double occupancy, boolean mayShrink ) {
+            final CacheStats stats = cache.stats();
+            final long misses = stats.missCount() - lastMisses;
+            lastMisses = stats.missCount();
+
+            final long current = eviction.getMaximum();
+            long next = current;
+            if ( occupancy >= highWatermark && mayShrink )
+                next = Math.max( minimum, (long) (current * (1 - shrinkRatio)) );
+            else if ( occupancy <= lowWatermark && isFull( current ) && ( misses > 0 || stats.requestCount() == 0 ) )
+                next = Math.min( maximum, current + Math.max( 1, (long) (current * growRatio) ) );
+
+            if ( next != current ) {
+                log.info( "Resizing cache " + name + " from " + current + " to " + next
+                        + " (heap occupancy " + Math.round( occupancy * 100 ) + "%)" );
+                eviction.setMaximum( next );
+            }
+            return next < current;
+        }
+
+        boolean isFull( long current ) {
+            final long usage = eviction.isWeighted()
+                    ? eviction.weightedSize().orElse( 0 )
+                    : cache.estimatedSize();
+            return usage >= current * FULL;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import io.undertow.server.Connectors;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.SameThreadExecutor;
+import kikaha.config.Config;
+import kikaha.core.modules.security.DefaultSession;
+import kikaha.core.modules.security.Session;
+import kikaha.core.modules.security.SessionIdManager;
+import kikaha.core.modules.security.SessionStore;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * A {@link SessionStore} backed by an {@link AsyncLoadingCache}. Sessions are resolved as
+ * {@link CompletableFuture}s, so a slow {@code AsyncCacheLoader} never blocks the IO thread:
+ * {@link #createOrRetrieveSession(HttpServerExchange, SessionIdManager, SessionHandler)} handles
+ * cache hits inline and only dispatches the exchange when it has to wait for a load.
+ * {@link #resolvingSessionsBefore(HttpHandler, SessionIdManager)} does the same for a whole handler
+ * chain, so the blocking {@link #createOrRetrieveSession(HttpServerExchange, SessionIdManager)} called
+ * by the handlers behind it never waits.
+ * <p>
+ * Sessions are kept on the {@code async-session-cache}: {@code session-cache} is the
+ * {@link com.github.benmanes.caffeine.cache.LoadingCache} of {@link CaffeineSessionStore}.
+ */
+@Singleton @Slf4j
+public class AsyncCaffeineSessionStore implements SessionStore {
+
+    static final String SESSION_CACHE = "async-session-cache";
+
+    private final SessionCreations sessionCreations = new SessionCreations();
+
+    /**
+     * The session already resolved for an exchange.
+     */
+    static final AttachmentKey<Session> RESOLVED_SESSION = AttachmentKey.create( Session.class );
+
+    @Inject @Named("async-session-cache")
+    AsyncLoadingCache<String, Session> sessionCache;
+
+    @Inject Config config;
+
+    SessionFlushMode flushMode = SessionFlushMode.ALWAYS;
+
+    @PostConstruct
+    public void loadConfiguration(){
+        flushMode = SessionFlushMode.from( config.getString( "server.cache.async-session-cache.flush-mode", "always" ) );
+    }
+
+    /**
+     * Retrieves the current session (creating it when needed) and hands it to {@code handler}.
+     * When the session is already available the handler runs right away on the current thread.
+     * Otherwise the exchange is dispatched and the handler runs once the session is loaded.
+     */
+    public void createOrRetrieveSession( HttpServerExchange exchange, SessionIdManager sessionIdManager, SessionHandler handler ) throws Exception {
+        final CompletableFuture<Session> future = createOrRetrieveSessionAsync( exchange, sessionIdManager );
+        if ( future.isDone() && !future.isCompletedExceptionally() )
+            handle( exchange, future.getNow( null ), handler );
+        else
+            exchange.dispatch( SameThreadExecutor.INSTANCE, () ->
+                future.whenComplete( (session, failure) -> Connectors.executeRootHandler( e -> {
+                    if ( failure != null )
+                        throw unwrap( failure );
+                    handle( e, session, handler );
+                }, exchange ))
+            );
+    }
+
+    private static void handle( HttpServerExchange exchange, Session session, SessionHandler handler ) throws Exception {
+        exchange.putAttachment( RESOLVED_SESSION, session );
+        handler.handle( exchange, session );
+    }
+
+    /**
+     * @return a handler that resolves the session of each request before calling {@code next}: right away
+     *         on cache hits, or from a dispatched exchange once a slow load completes
+     */
+    public HttpHandler resolvingSessionsBefore( HttpHandler next, SessionIdManager sessionIdManager ) {
+        return exchange -> createOrRetrieveSession( exchange, sessionIdManager, (e, session) -> next.handleRequest( e ) );
+    }
+
+    /**
+     * Retrieves the current session, creating a new one when neither the cache nor its
+     * {@code AsyncCacheLoader} knows about it.
+     */
+    public CompletableFuture<Session> createOrRetrieveSessionAsync( HttpServerExchange exchange, SessionIdManager sessionIdManager ) {
+        final String sessionId = sessionIdManager.retrieveSessionIdFrom(exchange);
+        return sessionCache.get( sessionId ).thenApply( session ->
+            session != null ? session : tryToCreateAndStoreNewSession( sessionId, exchange, sessionIdManager )
+        );
+    }
+
+    /**
+     * Blocking version of {@link #createOrRetrieveSessionAsync(HttpServerExchange, SessionIdManager)}.
+     * It answers the session already resolved for the exchange, if any, without waiting. Otherwise,
+     * it only waits for loads that did not complete yet on worker threads: IO threads must run handlers
+     * that need the session behind {@link #resolvingSessionsBefore(HttpHandler, SessionIdManager)}.
+     *
+     * @throws IllegalStateException if called on an IO thread while the session is still being loaded
+     */
+    @Override
+    public Session createOrRetrieveSession( HttpServerExchange exchange, SessionIdManager sessionIdManager ) {
+        final Session resolved = exchange.getAttachment( RESOLVED_SESSION );
+        if ( resolved != null )
+            return resolved;
+
+        final CompletableFuture<Session> future = createOrRetrieveSessionAsync( exchange, sessionIdManager );
+        if ( !future.isDone() && exchange.isInIoThread() )
+            throw new IllegalStateException( "Cannot wait for the session of " + exchange.getRequestPath() + " on an IO thread. "
+                    + "Resolve sessions through AsyncCaffeineSessionStore.resolvingSessionsBefore or dispatch the exchange first" );
+        return future.join();
+    }
+
+    @Override
+    public Session tryToCreateAndStoreNewSession(String sessionId, HttpServerExchange exchange, SessionIdManager sessionIdManager) {
+        return sessionCreations.createOnce( sessionId, () -> {
+            final Session stored = getLoadedSession( sessionId );
+            if ( stored != null )
+                return stored;
+
+            log.debug( "Session created: " + sessionId );
+            return createAndStoreNewSession( sessionId, exchange, sessionIdManager );
+        });
+    }
+
+    private Session getLoadedSession( String sessionId ) {
+        final CompletableFuture<Session> future = sessionCache.getIfPresent( sessionId );
+        return future == null || !future.isDone() || future.isCompletedExceptionally()
+                ? null : future.getNow( null );
+    }
+
+    /**
+     * Creates a {@link TrackedSession}, so {@link #flush(Session)} can tell whether it was modified.
+     */
+    @Override
+    public Session createAndStoreNewSession( String sessionId, HttpServerExchange exchange, SessionIdManager sessionIdManager ) {
+        final Session session = new TrackedSession( new DefaultSession( sessionId ) );
+        storeSession( sessionId, session );
+        sessionIdManager.attachSessionId( exchange, sessionId );
+        return session;
+    }
+
+    @Override
+    public void invalidateSession( Session session ) {
+        sessionCache.synchronous().invalidate( session.getId() );
+    }
+
+    @Override
+    public void flush( Session currentSession ) {
+        if ( flushMode.shouldStore( currentSession ) )
+            storeSession( currentSession.getId(), currentSession );
+        else if ( flushMode == SessionFlushMode.TOUCH )
+            sessionCache.getIfPresent( currentSession.getId() );
+    }
+
+    /**
+     * @return the session {@code sessionId} if it is loaded already: sessions still being loaded are not waited for
+     */
+    @Override
+    public Session getSessionFromCache( String sessionId ) {
+        return getLoadedSession( sessionId );
+    }
+
+    @Override
+    public void storeSession( String sessionId, Session session ) {
+        sessionCache.put( sessionId, completedFuture( session ) );
+    }
+
+    private static Exception unwrap( Throwable failure ) {
+        final Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        return cause instanceof Exception ? (Exception) cause : new CompletionException( cause );
+    }
+
+    /**
+     * Handles the request once its session is available.
+     */
+    @FunctionalInterface
+    public interface SessionHandler {
+        void handle( HttpServerExchange exchange, Session session ) throws Exception;
+    }
+}
@@ -0,0 +1,24 @@
+package kikaha.caffeine;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes cache changes into a backing store in batches. Implementations annotated with
+ * {@code @Named} are used as the write-behind writer of the cache with the same name: writes
+ * are queued, coalesced per key (only the last value is kept) and flushed in background.
+ * <p>
+ * Entries evicted from the cache are not deleted from the backing store.
+ */
+public interface BatchCacheWriter<K, V> {
+
+    /**
+     * Writes (inserts or updates) every entry of {@code entries} into the backing store.
+     */
+    void writeAll( Map<K, V> entries ) throws Exception;
+
+    /**
+     * Deletes every entry identified by {@code keys} from the backing store.
+     */
+    void deleteAll( Collection<K> keys ) throws Exception;
+}
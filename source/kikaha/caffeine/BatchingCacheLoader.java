@@ -0,0 +1,212 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+/**
+ * A {@link CacheLoader} that coalesces concurrent misses into bulk loads. Keys requested
+ * by different threads are collected for up to {@code maxWait} milliseconds (or until
+ * {@code maxBatchSize} keys are pending) and are then loaded at once through the
+ * {@code loadAll} method of the wrapped loader. Each caller receives its own value back.
+ * <p>
+ * Loaders that do not implement {@code loadAll} have their keys loaded one by one.
+ */
+class BatchingCacheLoader<K, V> implements CacheLoader<K, V> {
+
+    static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor( r -> {
+        final Thread thread = new Thread( r, "cache-batching-loader" );
+        thread.setDaemon( true );
+        return thread;
+    });
+
+    final AsyncCacheLoader<K, V> loader;
+    final Function<Set<K>, CompletableFuture<Map<K, V>>> bulkLoader;
+    final int maxBatchSize;
+    final long maxWait;
+
+    private Map<K, CompletableFuture<V>> batch = new HashMap<>();
+
+    private BatchingCacheLoader( AsyncCacheLoader<K, V> loader, Function<Set<K>, CompletableFuture<Map<K, V>>> bulkLoader, int maxBatchSize, long maxWait ) {
+        this.loader = loader;
+        this.bulkLoader = bulkLoader;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWait = maxWait;
+    }
+
+    static <K, V> BatchingCacheLoader<K, V> wrap( CacheLoader<K, V> loader, Executor executor, int maxBatchSize, long maxWait ) {
+        return new BatchingCacheLoader<>( loader, keys -> supplyAsync( () -> loadAll( loader, keys ), executor ), maxBatchSize, maxWait );
+    }
+
+    static <K, V> BatchingCacheLoader<K, V> wrap( AsyncCacheLoader<K, V> loader, Executor executor, int maxBatchSize, long maxWait ) {
+        return new BatchingCacheLoader<>( loader, keys -> asyncLoadAll( loader, keys, executor ), maxBatchSize, maxWait );
+    }
+
+    @Override
+    public V load( K key ) throws Exception {
+        try {
+            return enqueue( key ).join();
+        } catch ( CompletionException cause ) {
+            throw unwrap( cause );
+        }
+    }
+
+    @Override
+    public CompletableFuture<V> asyncLoad( K key, Executor executor ) {
+        return enqueue( key );
+    }
+
+    @Override
+    public Map<K, V> loadAll( Iterable<? extends K> keys ) throws Exception {
+        try {
+            return bulkLoader.apply( toSet( keys ) ).join();
+        } catch ( CompletionException cause ) {
+            throw unwrap( cause );
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<K, V>> asyncLoadAll( Iterable<? extends K> keys, Executor executor ) {
+        return bulkLoader.apply( toSet( keys ) );
+    }
+
+    @Override
+    public CompletableFuture<V> asyncReload( K key, V oldValue, Executor executor ) {
+        return loader.asyncReload( key, oldValue, executor );
+    }
+
+    private CompletableFuture<V> enqueue( K key ) {
+        final Map<K, CompletableFuture<V>> full;
+        final CompletableFuture<V> future;
+
+        synchronized ( this ) {
+            final boolean isFirstKeyOfTheBatch = batch.isEmpty();
+            future = batch.computeIfAbsent( key, k -> new CompletableFuture<>() );
+            if ( batch.size() >= maxBatchSize )
+                full = swapBatch();
+            else {
+                full = null;
+                if ( isFirstKeyOfTheBatch ) {
+                    final Map<K, CompletableFuture<V>> scheduled = batch;
+                    scheduler.schedule( () -> dispatchIfPending( scheduled ), maxWait, TimeUnit.MILLISECONDS );
+                }
+            }
+        }
+
+        if ( full != null )
+            dispatch( full );
+        return future;
+    }
+
+    private Map<K, CompletableFuture<V>> swapBatch() {
+        final Map<K, CompletableFuture<V>> current = batch;
+        batch = new HashMap<>();
+        return current;
+    }
+
+    private void dispatchIfPending( Map<K, CompletableFuture<V>> scheduled ) {
+        final Map<K, CompletableFuture<V>> pending;
+        synchronized ( this ) {
+            // the batch may have been dispatched already because it got full
+            if ( batch != scheduled )
+                return;
+            pending = swapBatch();
+        }
+        dispatch( pending );
+    }
+
+    private void dispatch( Map<K, CompletableFuture<V>> pending ) {
+        final CompletableFuture<Map<K, V>> loaded;
+        try {
+            loaded = bulkLoader.apply( pending.keySet() );
+        } catch ( Throwable cause ) {
+            pending.values().forEach( f -> f.completeExceptionally( cause ) );
+            return;
+        }
+
+        loaded.whenComplete( (values, failure) -> {
+            for ( final Map.Entry<K, CompletableFuture<V>> entry : pending.entrySet() )
+                if ( failure != null )
+                    entry.getValue().completeExceptionally( failure );
+                else
+                    entry.getValue().complete( values.get( entry.getKey() ) );
+        });
+    }
+
+    private static <K, V> Map<K, V> loadAll( CacheLoader<K, V> loader, Set<K> keys ) {
+        try {
+            return loader.loadAll( keys );
+        } catch ( UnsupportedOperationException cause ) {
+            final Map<K, V> values = new HashMap<>();
+            for ( final K key : keys ) {
+                final V value = loadOne( loader, key );
+                if ( value != null )
+                    values.put( key, value );
+            }
+            return values;
+        } catch ( Exception cause ) {
+            throw new CompletionException( cause );
+        }
+    }
+
+    private static <K, V> V loadOne( CacheLoader<K, V> loader, K key ) {
+        try {
+            return loader.load( key );
+        } catch ( Exception cause ) {
+            throw new CompletionException( cause );
+        }
+    }
+
+    /**
+     * @return the values loaded by {@code loader.asyncLoadAll} or, when it is not implemented, by {@code loader.asyncLoad}
+     *         for each key. A {@link CacheLoader} without {@code loadAll} only reports it once its future completes.
+     */
+    static <K, V> CompletableFuture<Map<K, V>> asyncLoadAll( AsyncCacheLoader<K, V> loader, Set<K> keys, Executor executor ) {
+        final CompletableFuture<Map<K, V>> loaded;
+        try {
+            loaded = loader.asyncLoadAll( keys, executor );
+        } catch ( UnsupportedOperationException cause ) {
+            return asyncLoadEach( loader, keys, executor );
+        }
+        return loaded.handle( (values, cause) -> isUnsupported( cause ) ? asyncLoadEach( loader, keys, executor ) : loaded )
+                .thenCompose( future -> future );
+    }
+
+    private static boolean isUnsupported( Throwable cause ) {
+        if ( cause instanceof CompletionException )
+            cause = cause.getCause();
+        return cause instanceof UnsupportedOperationException;
+    }
+
+    private static <K, V> CompletableFuture<Map<K, V>> asyncLoadEach( AsyncCacheLoader<K, V> loader, Set<K> keys, Executor executor ) {
+        final Map<K, CompletableFuture<V>> futures = new HashMap<>();
+        for ( final K key : keys )
+            futures.put( key, loader.asyncLoad( key, executor ) );
+        return CompletableFuture.allOf( futures.values().toArray( new CompletableFuture[0] ) ).thenApply( ignored -> {
+            final Map<K, V> values = new HashMap<>();
+            futures.forEach( (key, future) -> {
+                final V value = future.join();
+                if ( value != null )
+                    values.put( key, value );
+            });
+            return values;
+        });
+    }
+
+    static <K> Set<K> toSet( Iterable<? extends K> keys ) {
+        final Set<K> set = new LinkedHashSet<>();
+        for ( final K key : keys )
+            set.add( key );
+        return set;
+    }
+
+    private static Exception unwrap( CompletionException cause ) {
+        final Throwable original = cause.getCause();
+        return original instanceof Exception ? (Exception) original : cause;
+    }
+}
@@ -0,0 +1,61 @@
+package kikaha.caffeine;
+
+import kikaha.core.cdi.CDI;
+import lombok.NonNull;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indexes, by their {@code @Named} value, the CDI managed components bound to caches
+ * (loaders, writers, weighers, executors...). Each component type is looked up on CDI
+ * only once, so building a cache does not scan every implementation again.
+ * <p>
+ * Two components of the same type cannot share a name: which one a cache gets would be arbitrary.
+ */
+@Singleton
+@SuppressWarnings("unchecked")
+public class CacheComponents {
+
+    private final CacheRegistry<Map<String, Object>> indexes = new CacheRegistry<>();
+
+    @Inject CDI cdi;
+
+    /**
+     * @return the component of type {@code type} named {@code name}, or {@code null} if there is none
+     */
+    <T> T named( Class<T> type, String name ) {
+        return (T) indexes.resolve( type.getName(), n -> index( type ) ).get( name );
+    }
+
+    /**
+     * @return every component of type {@code type}, indexed by its name
+     */
+    <T> Map<String, T> all( Class<T> type ) {
+        return Collections.unmodifiableMap( (Map<String, T>) indexes.resolve( type.getName(), n -> index( type ) ) );
+    }
+
+    /**
+     * @throws IllegalStateException if two components of type {@code type} share the same name
+     */
+    private Map<String, Object> index( Class<?> type ) {
+        final Map<String, Object> index = new HashMap<>();
+        for ( final Object component : cdi.loadAll( type ) ) {
+            final String name = nameOf( component );
+            final Object previous = name != null ? index.putIfAbsent( name, component ) : null;
+            if ( previous != null && previous != component )
+                throw new IllegalStateException( "Both " + previous + " and " + component + " are "
+                        + type.getSimpleName() + "s named " + name );
+        }
+        return index;
+    }
+
+    static String nameOf( @NonNull Object obj ) {
+        final Named named = obj.getClass().getAnnotation(Named.class);
+        return ( named == null ) ? null : named.value();
+    }
+}
@@ -0,0 +1,25 @@
+package kikaha.caffeine;
+
+import java.lang.annotation.*;
+
+/**
+ * Removes, once the annotated method returns, the entry indexed by its arguments from the cache
+ * named {@link #value()}.
+ *
+ * @see CacheProxies
+ */
+@Documented
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.METHOD )
+public @interface CacheEvict {
+
+    /**
+     * @return the name of the cache, as configured under {@code server.cache}
+     */
+    String value();
+
+    /**
+     * @return {@code true} to remove every entry of the cache instead of the one indexed by the arguments
+     */
+    boolean allEntries() default false;
+}
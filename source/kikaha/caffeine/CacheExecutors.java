@@ -0,0 +1,151 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import kikaha.config.Config;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves the {@link Executor} each cache uses for refreshes, asynchronous loads and
+ * maintenance. It is selected by name through {@code server.cache.<name>.executor}:
+ * <ul>
+ *     <li>{@code common-pool}: the {@link ForkJoinPool#commonPool()} (Caffeine's default)</li>
+ *     <li>{@code virtual-threads}: a new virtual thread per task, on JDKs that support it</li>
+ *     <li>the name of an {@code @Named} {@link Executor} managed by CDI</li>
+ *     <li>any other name: a dedicated pool shared by every cache that references it, sized
+ *     by {@code server.cache.executors.<pool>.threads}. When {@code queue-capacity} is also
+ *     defined the pool is bounded: once its queue is full, tasks are rejected.</li>
+ * </ul>
+ * Asynchronous loads rejected by the executor complete exceptionally with a {@link RejectedExecutionException}
+ * (see {@link #failingOnRejection(AsyncCacheLoader)}) instead of running on the submitting thread, which
+ * may be an IO thread. Caffeine itself runs the maintenance it could not submit on the calling thread.
+ */
+@Singleton @Slf4j
+public class CacheExecutors {
+
+    static final String COMMON_POOL = "common-pool", VIRTUAL_THREADS = "virtual-threads";
+
+    private final Map<String, Executor> executors = new ConcurrentHashMap<>();
+
+    @Inject CacheComponents components;
+    @Inject Config config;
+
+    /**
+     * @return the executor configured for the cache {@code cacheName}, or {@code null} if none was configured
+     * @see #executorOrDefaultFor(String)
+     */
+    Executor executorFor( String cacheName ) {
+        final String executorName = config.getString( "server.cache." + cacheName + ".executor", null );
+        if ( executorName == null )
+            return null;
+
+        return executors.computeIfAbsent( executorName, this::createExecutor );
+    }
+
+    /**
+     * @return the executor configured for the cache {@code cacheName}, or the {@link ForkJoinPool#commonPool()}
+     */
+    Executor executorOrDefaultFor( String cacheName ) {
+        final Executor executor = executorFor( cacheName );
+        return executor != null ? executor : ForkJoinPool.commonPool();
+    }
+
+    private Executor createExecutor( String executorName ) {
+        switch ( executorName ) {
+            case COMMON_POOL: return ForkJoinPool.commonPool();
+            case VIRTUAL_THREADS: return createVirtualThreadExecutor();
+            default:
+                final Executor managed = components.named( Executor.class, executorName );
+                if ( managed != null ) {
+                    log.info( "Using executor " + managed + " as cache executor " + executorName );
+                    return managed;
+                }
+                return createDedicatedPool( executorName );
+        }
+    }
+
+    private Executor createVirtualThreadExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+        } catch ( ReflectiveOperationException cause ) {
+            log.warn( "Virtual threads are not supported by this JVM. Falling back to the common pool." );
+            return ForkJoinPool.commonPool();
+        }
+    }
+
+    private Executor createDedicatedPool( String executorName ) {
+        final int threads = getInt( "server.cache.executors." + executorName + ".threads", Runtime.getRuntime().availableProcessors() ),
+                  queueCapacity = getInt( "server.cache.executors." + executorName + ".queue-capacity", 0 );
+
+        if ( queueCapacity <= 0 ) {
+            log.info( "Creating cache executor " + executorName + " with " + threads + " threads" );
+            return Executors.newFixedThreadPool( threads, daemonThreadsNamed( executorName ) );
+        }
+
+        log.info( "Creating cache executor " + executorName + " with " + threads + " threads and queue-capacity " + queueCapacity );
+        return new ThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>( queueCapacity ), daemonThreadsNamed( executorName ),
+                new ThreadPoolExecutor.AbortPolicy() );
+    }
+
+    /**
+     * @return {@code loader}, except that loads rejected by the executor return futures completed with the
+     *         {@link RejectedExecutionException} instead of throwing it at the caller. Bulk loads fall back
+     *         to one load per key when {@code loader} does not implement them.
+     */
+    static <K, V> AsyncCacheLoader<K, V> failingOnRejection( AsyncCacheLoader<K, V> loader ) {
+        return new AsyncCacheLoader<K, V>() {
+            @Override
+            public CompletableFuture<V> asyncLoad( K key, Executor executor ) {
+                try {
+                    return loader.asyncLoad( key, executor );
+                } catch ( RejectedExecutionException cause ) {
+                    return failed( cause );
+                }
+            }
+
+            @Override
+            public CompletableFuture<Map<K, V>> asyncLoadAll( Iterable<? extends K> keys, Executor executor ) {
+                try {
+                    return BatchingCacheLoader.asyncLoadAll( loader, BatchingCacheLoader.toSet( keys ), executor );
+                } catch ( RejectedExecutionException cause ) {
+                    return failed( cause );
+                }
+            }
+
+            @Override
+            public CompletableFuture<V> asyncReload( K key, V oldValue, Executor executor ) {
+                try {
+                    return loader.asyncReload( key, oldValue, executor );
+                } catch ( RejectedExecutionException cause ) {
+                    return failed( cause );
+                }
+            }
+        };
+    }
+
+    private static <T> CompletableFuture<T> failed( Throwable cause ) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally( cause );
+        return future;
+    }
+
+    private int getInt( String path, int defaultValue ) {
+        final Object value = config.getObject( path );
+        return value == null ? defaultValue : Integer.valueOf( value.toString() );
+    }
+
+    static ThreadFactory daemonThreadsNamed( String executorName ) {
+        final AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            final Thread thread = new Thread( r, "cache-" + executorName + "-" + counter.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        };
+    }
+}
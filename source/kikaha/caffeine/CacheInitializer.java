@@ -0,0 +1,32 @@
+package kikaha.caffeine;
+
+import kikaha.config.Config;
+import kikaha.core.DeploymentContext;
+import kikaha.core.DeploymentListener;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Prepares the caches while the application is deployed, before it starts accepting requests:
+ * every configured cache with an explicit {@code type} is built when {@code server.cache.eager-initialization}
+ * is set (otherwise caches are built the first time they are injected), then caches with a
+ * {@link CacheWarmer} are preloaded.
+ */
+@Singleton
+public class CacheInitializer implements DeploymentListener {
+
+    @Inject CacheProducer cacheProducer;
+    @Inject Config config;
+
+    @Override
+    public void onDeploy( DeploymentContext context ) {
+        if ( config.getBoolean( "server.cache.eager-initialization", false ) )
+            cacheProducer.initializeConfiguredCaches();
+        cacheProducer.warmUpCaches();
+    }
+
+    @Override
+    public void onUndeploy( DeploymentContext context ) {
+    }
+}
@@ -0,0 +1,139 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Routes the calls to methods annotated with {@link Cached}, {@link CachePut} or {@link CacheEvict}
+ * through their caches. Other methods are called on the target directly.
+ */
+@RequiredArgsConstructor
+@SuppressWarnings("unchecked")
+class CacheInterceptor implements InvocationHandler {
+
+    final Object target;
+    final Map<Method, Operation> operations;
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] arguments ) throws Throwable {
+        final Operation operation = operations.get( method );
+        if ( operation == null )
+            return call( method, arguments );
+
+        try {
+            return operation.invoke( this, method, arguments );
+        } catch ( Failure failure ) {
+            throw failure.getCause();
+        }
+    }
+
+    Object call( Method method, Object[] arguments ) throws Throwable {
+        try {
+            return method.invoke( target, arguments );
+        } catch ( InvocationTargetException cause ) {
+            throw cause.getCause();
+        }
+    }
+
+    /**
+     * Calls the target from inside the caches, which only let unchecked exceptions through.
+     */
+    Object callFromCache( Method method, Object[] arguments ) {
+        try {
+            return call( method, arguments );
+        } catch ( Throwable cause ) {
+            throw new Failure( cause );
+        }
+    }
+
+    abstract static class Operation {
+        abstract Object invoke( CacheInterceptor interceptor, Method method, Object[] arguments ) throws Throwable;
+    }
+
+    @RequiredArgsConstructor
+    static class CachedResult extends Operation {
+        final Cache cache;
+
+        @Override
+        Object invoke( CacheInterceptor interceptor, Method method, Object[] arguments ) {
+            return cache.get( CacheKey.of( arguments ), k -> interceptor.callFromCache( method, arguments ) );
+        }
+    }
+
+    @RequiredArgsConstructor
+    static class CachedFuture extends Operation {
+        final AsyncLoadingCache cache;
+
+        @Override
+        Object invoke( CacheInterceptor interceptor, Method method, Object[] arguments ) {
+            return cache.get( CacheKey.of( arguments ), (k, executor) -> {
+                final CompletionStage stage = (CompletionStage) interceptor.callFromCache( method, arguments );
+                return stage != null ? stage.toCompletableFuture() : completedFuture( null );
+            });
+        }
+    }
+
+    @RequiredArgsConstructor
+    static class PutResult extends Operation {
+        final Cache cache;
+
+        @Override
+        Object invoke( CacheInterceptor interceptor, Method method, Object[] arguments ) throws Throwable {
+            final Object result = interceptor.call( method, arguments );
+            if ( result != null )
+                cache.put( CacheKey.of( arguments ), result );
+            return result;
+        }
+    }
+
+    @RequiredArgsConstructor
+    static class PutFuture extends Operation {
+        final AsyncLoadingCache cache;
+
+        @Override
+        Object invoke( CacheInterceptor interceptor, Method method, Object[] arguments ) throws Throwable {
+            final CompletionStage result = (CompletionStage) interceptor.call( method, arguments );
+            if ( result == null )
+                return null;
+            final CompletableFuture future = result.toCompletableFuture();
+            cache.put( CacheKey.of( arguments ), future );
+            return future;
+        }
+    }
+
+    @RequiredArgsConstructor
+    static class Evict extends Operation {
+        final CacheProducer cacheProducer;
+        final String cacheName;
+        final boolean allEntries;
+
+        @Override
+        Object invoke( CacheInterceptor interceptor, Method method, Object[] arguments ) throws Throwable {
+            final Object result = interceptor.call( method, arguments );
+            final Cache cache = cacheProducer.existingCacheNamed( cacheName );
+            if ( cache == null )
+                return result;
+            if ( allEntries )
+                cache.invalidateAll();
+            else
+                cache.invalidate( CacheKey.of( arguments ) );
+            return result;
+        }
+    }
+
+    static class Failure extends RuntimeException {
+        Failure( Throwable cause ) {
+            super( cause );
+        }
+    }
+}
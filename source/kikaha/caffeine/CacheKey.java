@@ -0,0 +1,46 @@
+package kikaha.caffeine;
+
+import java.util.Arrays;
+
+/**
+ * The key of a method result cached by {@link CacheInterceptor}. Methods without arguments share
+ * the {@link #EMPTY} key and methods with a single argument use the argument itself, so neither
+ * allocates a key. Only methods with more arguments are indexed by a {@link CacheKey}, which
+ * holds the argument array without copying it.
+ */
+final class CacheKey {
+
+    static final Object EMPTY = new CacheKey( new Object[0] );
+
+    private final Object[] arguments;
+    private final int hashCode;
+
+    private CacheKey( Object[] arguments ) {
+        this.arguments = arguments;
+        this.hashCode = Arrays.deepHashCode( arguments );
+    }
+
+    static Object of( Object[] arguments ) {
+        if ( arguments == null || arguments.length == 0 )
+            return EMPTY;
+        if ( arguments.length == 1 && arguments[0] != null && !arguments[0].getClass().isArray() )
+            return arguments[0];
+        return new CacheKey( arguments );
+    }
+
+    @Override
+    public boolean equals( Object other ) {
+        return this == other
+            || other instanceof CacheKey && hashCode == other.hashCode() && Arrays.deepEquals( arguments, ((CacheKey) other).arguments );
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.deepToString( arguments );
+    }
+}
@@ -0,0 +1,107 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Changes the sizing and expiration of live caches through Caffeine's {@link Policy}, keeping
+ * their entries. Only the policies a cache was built with can be tuned: a cache built without
+ * {@code maximum-size} cannot be bounded at runtime, for instance.
+ * <p>
+ * Caches built with {@code maximum-size} whose hot keys are pinned are bounded by weight, every
+ * entry weighing one. They are still tuned, and reported, through {@code maximum-size}.
+ */
+@Singleton @Slf4j
+public class CacheManagement {
+
+    @Inject CacheProducer cacheProducer;
+
+    /**
+     * Applies {@code settings} to the cache {@code name}. Every setting is validated before
+     * any of them is applied. A new maximum disables the adaptive sizing of the cache.
+     *
+     * @return the state of the cache before and after the change
+     * @throws NoSuchElementException if there is no cache named {@code name}
+     * @throws IllegalArgumentException if the cache cannot be tuned with {@code settings}
+     */
+    public Reconfiguration reconfigure( String name, CacheSettings settings ) {
+        final Cache<?, ?> cache = cacheProducer.registeredCaches().get( name );
+        if ( cache == null )
+            throw new NoSuchElementException( "No cache named " + name );
+        if ( settings.isEmpty() )
+            throw new IllegalArgumentException( "Nothing to change on " + name );
+
+        final Policy<?, ?> policy = cache.policy();
+        final Policy.Eviction<?, ?> eviction = policy.eviction().orElse( null );
+        final Policy.Expiration<?, ?> afterAccess = policy.expireAfterAccess().orElse( null ),
+                                      afterWrite = policy.expireAfterWrite().orElse( null );
+
+        final boolean boundedBySize = isBoundedBySize( name, eviction );
+        if ( settings.maximumSize != null && !boundedBySize )
+            throw new IllegalArgumentException( name + " was not built with maximum-size" );
+        if ( settings.maximumWeight != null && ( eviction == null || boundedBySize ) )
+            throw new IllegalArgumentException( name + " was not built with maximum-weight" );
+        if ( settings.timeAfterAccessInNanos != null && afterAccess == null )
+            throw new IllegalArgumentException( name + " was not built with expiration.time-after-access" );
+        if ( settings.timeAfterWriteInNanos != null && afterWrite == null )
+            throw new IllegalArgumentException( name + " was not built with expiration.time-after-write" );
+
+        final CacheState before = CacheState.of( cache, boundedBySize );
+        synchronized ( cache ) {
+            final Long maximum = settings.maximumSize != null ? settings.maximumSize : settings.maximumWeight;
+            if ( maximum != null ) {
+                cacheProducer.disableAdaptiveSizingOf( name );
+                eviction.setMaximum( maximum );
+            }
+            if ( settings.timeAfterAccessInNanos != null )
+                afterAccess.setExpiresAfter( settings.timeAfterAccessInNanos, TimeUnit.NANOSECONDS );
+            if ( settings.timeAfterWriteInNanos != null )
+                afterWrite.setExpiresAfter( settings.timeAfterWriteInNanos, TimeUnit.NANOSECONDS );
+        }
+        final CacheState after = CacheState.of( cache, boundedBySize );
+
+        log.info( "Reconfigured cache " + name + ": " + before.toJson() + " -> " + after.toJson() );
+        return new Reconfiguration( name, before, after );
+    }
+
+    /**
+     * @return the current state of the cache {@code name}
+     * @throws NoSuchElementException if there is no cache named {@code name}
+     */
+    public CacheState stateOf( String name ) {
+        final Cache<?, ?> cache = cacheProducer.registeredCaches().get( name );
+        if ( cache == null )
+            throw new NoSuchElementException( "No cache named " + name );
+        return CacheState.of( cache, isBoundedBySize( name, cache.policy().eviction().orElse( null ) ) );
+    }
+
+    /**
+     * @return whether the maximum of the cache counts its entries, even if pinning its hot keys made it weighted
+     */
+    private boolean isBoundedBySize( String name, Policy.Eviction<?, ?> eviction ) {
+        return eviction != null && ( !eviction.isWeighted() || cacheProducer.weighsEveryEntryAsOne( name ) );
+    }
+
+    @RequiredArgsConstructor
+    public static class Reconfiguration {
+
+        final String name;
+        final CacheState before, after;
+
+        String toJson() {
+            final StringBuilder json = new StringBuilder( "{\"name\":\"" ).append( CacheStatsResource.escape( name ) ).append( '"' );
+            json.append( ",\"before\":" );
+            before.renderTo( json );
+            json.append( ",\"after\":" );
+            after.renderTo( json );
+            return json.append( '}' ).toString();
+        }
+    }
+}
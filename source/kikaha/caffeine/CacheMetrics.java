@@ -0,0 +1,78 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a cache configured with {@code server.cache.<name>.record-stats}. Besides
+ * Caffeine's own {@link CacheStats}, it keeps a histogram of load latencies and counts
+ * removals by {@link RemovalCause}.
+ */
+@RequiredArgsConstructor
+class CacheMetrics implements StatsCounter, RemovalListener<Object, Object> {
+
+    final String name;
+    final LatencyHistogram loadLatencies = new LatencyHistogram();
+
+    private final StatsCounter stats = new ConcurrentStatsCounter();
+    private final LongAdder[] removals = newCounters( RemovalCause.values().length );
+
+    @Override
+    public void recordHits( int count ) {
+        stats.recordHits( count );
+    }
+
+    @Override
+    public void recordMisses( int count ) {
+        stats.recordMisses( count );
+    }
+
+    @Override
+    public void recordLoadSuccess( long loadTime ) {
+        stats.recordLoadSuccess( loadTime );
+        loadLatencies.record( loadTime );
+    }
+
+    @Override
+    public void recordLoadFailure( long loadTime ) {
+        stats.recordLoadFailure( loadTime );
+        loadLatencies.record( loadTime );
+    }
+
+    @Override
+    public void recordEviction() {
+        stats.recordEviction();
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return stats.snapshot();
+    }
+
+    @Override
+    public void onRemoval( Object key, Object value, RemovalCause cause ) {
+        removals[ cause.ordinal() ].increment();
+    }
+
+    private static LongAdder[] newCounters( int length ) {
+        final LongAdder[] counters = new LongAdder[ length ];
+        for ( int i = 0; i < length; i++ )
+            counters[i] = new LongAdder();
+        return counters;
+    }
+
+    Map<RemovalCause, Long> removalsByCause() {
+        final Map<RemovalCause, Long> counts = new EnumMap<>( RemovalCause.class );
+        for ( final RemovalCause cause : RemovalCause.values() )
+            counts.put( cause, removals[ cause.ordinal() ].sum() );
+        return counts;
+    }
+}
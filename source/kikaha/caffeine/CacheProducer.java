@@ -2,20 +2,28 @@ package kikaha.caffeine;
 
 import com.github.benmanes.caffeine.cache.*;
 import kikaha.config.Config;
-import kikaha.core.cdi.CDI;
 import kikaha.core.cdi.ProviderContext;
-import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
-import lombok.experimental.Delegate;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.enterprise.inject.Produces;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.concurrent.CompletableFuture.completedFuture;
@@ -31,58 +39,299 @@ public class CacheProducer {
     static final CacheLoader EMPTY_CACHE_LOADER = s -> null;
     static final AsyncCacheLoader EMPTY_ASYNC_CACHE_LOADER = (key, executor) -> completedFuture(null);
 
-    private final Map<String, Cache> caches = new HashMap<>();
-    private final Map<String, LoadingCache> loadingCaches = new HashMap<>();
-    private final Map<String, AsyncLoadingCache> asyncLoadingCaches = new HashMap<>();
+    /**
+     * Entries under {@code server.cache} that hold settings of this module instead of a cache.
+     */
+    static final Set<String> RESERVED_NAMES = new HashSet<>( Arrays.asList( "executors", "stats-endpoint", "management-endpoint", "adaptive-sizing" ) );
+
+    private final CacheRegistry<Object> caches = new CacheRegistry<>();
+    private final Map<Object, CacheBuild> builds = Collections.synchronizedMap( new IdentityHashMap<>() );
+
+    /**
+     * Removal listeners chained by the code owning a cache rather than named after it. Only the caches listed
+     * here accept them, even once built: {@code session-cache}, whose sessions are indexed by {@link CaffeineSessionStore}.
+     */
+    private final Map<String, List<RemovalListener>> chainedListeners = new ConcurrentHashMap<>(
+            Collections.singletonMap( CaffeineSessionStore.SESSION_CACHE, new CopyOnWriteArrayList<RemovalListener>() ) );
+    private AdaptiveSizing adaptiveSizing;
 
-    @Inject CDI cdi;
     @Inject Config config;
+    @Inject CacheExecutors executors;
+    @Inject CacheComponents components;
 
     @Produces Cache produceCache(ProviderContext context){
         final String name = getNameFrom( context );
-        return new LazyCache( name );
+        return synchronousViewOf( initialize( name, config.getString( "server.cache." + name + ".type", "cache" ) ) );
     }
 
     @Produces LoadingCache produceLoadingCache(ProviderContext context){
-        final String name = getNameFrom( context );
-        return new LazyLoadingCache(
-            () -> loadingCaches.computeIfAbsent( name,
-                n -> buildLoadingCache( name, createNewCacheBuilder( name ) ))
-        );
+        return loadingCacheNamed( getNameFrom( context ) );
     }
 
     @Produces AsyncLoadingCache produceAsyncLoadingCache(ProviderContext context){
-        final String name = getNameFrom( context );
-        return new LazyAsyncLoadingCache( name );
+        return asyncCacheNamed( getNameFrom( context ) );
+    }
+
+    /**
+     * Builds, in parallel, every cache configured under {@code server.cache} with an explicit
+     * {@code type} ({@code cache}, {@code loading-cache} or {@code async-loading-cache}). Other
+     * caches are built on first use, with the type of their injection point: building them
+     * upfront would make injection points of another type fail.
+     */
+    void initializeConfiguredCaches(){
+        final long start = System.currentTimeMillis();
+        final List<String> names = configuredCacheNames();
+        names.parallelStream().forEach( name -> initialize( name, typeOf( name ) ) );
+        log.info( "Initialized " + names.size() + " caches in " + (System.currentTimeMillis() - start) + "ms" );
+    }
+
+    private List<String> configuredCacheNames(){
+        final List<String> names = new ArrayList<>();
+        final Object caches = config.getObject( "server.cache" );
+        if ( caches instanceof Map )
+            ((Map<String, Object>) caches).forEach( (name, settings) -> {
+                if ( settings instanceof Map && !RESERVED_NAMES.contains( name ) && ((Map) settings).get( "type" ) != null )
+                    names.add( name );
+            });
+        return names;
+    }
+
+    /**
+     * Preloads every cache that has a {@link CacheWarmer} named after it, one cache at a time.
+     * Settings are read from {@code server.cache.<name>.warm-up}: {@code batch-size}
+     * (keys per {@code getAll} call) and {@code parallelism} (batches loaded simultaneously).
+     */
+    void warmUpCaches(){
+        components.all( CacheWarmer.class ).forEach( (name, warmer) -> {
+            final Object cache = initialize( name, typeOf( name ) );
+            if ( !(cache instanceof LoadingCache) && !(cache instanceof AsyncLoadingCache) ) {
+                log.warn( "Cannot warm up " + name + ": only loading caches can be preloaded" );
+                return;
+            }
+
+            final int batchSize = (int) getLong( "server.cache." + name + ".warm-up.batch-size", 100 ),
+                      parallelism = (int) getLong( "server.cache." + name + ".warm-up.parallelism", Runtime.getRuntime().availableProcessors() );
+            final long start = System.currentTimeMillis();
+            try {
+                final long loaded = new CacheWarmUp( name, batchSize, parallelism ).warmUp( cache, warmer );
+                log.info( "Preloaded " + loaded + " keys into " + name + " in " + (System.currentTimeMillis() - start) + "ms" );
+            } catch ( Exception cause ) {
+                log.error( "Could not warm up " + name, cause );
+            }
+        });
+    }
+
+    /**
+     * @return the {@code type} of the cache {@code name}, which defaults to {@code async-loading-cache} when
+     *         only an {@link AsyncCacheLoader} is named after it, or to {@code loading-cache}
+     */
+    private String typeOf( String name ) {
+        return config.getString( "server.cache." + name + ".type",
+            components.named( CacheLoader.class, name ) == null && components.named( AsyncCacheLoader.class, name ) != null
+                ? "async-loading-cache" : "loading-cache" );
+    }
+
+    /**
+     * @return the cache named {@code name}, whatever its type, building it as a {@code type} if it does not exist yet
+     */
+    private Object initialize( String name, String type ) {
+        return caches.resolve( name, n -> build( n, type ) );
+    }
+
+    /**
+     * Discards what was started for the cache, such as its hot key tracker, when it could not be built.
+     */
+    private Object build( String name, String type ) {
+        final CacheBuild build = new CacheBuild( name );
+        try {
+            switch ( type ) {
+                case "cache":
+                    return buildCache( createNewCacheBuilder( build, false ) );
+                case "loading-cache":
+                    return buildLoadingCache( createNewCacheBuilder( build, false ) );
+                case "async-loading-cache":
+                    return buildAsyncLoadingCache( createNewCacheBuilder( build, true ) );
+                default:
+                    throw new IllegalArgumentException( "Unknown cache type for " + name + ": " + type );
+            }
+        } catch ( RuntimeException | Error cause ) {
+            build.discard();
+            throw cause;
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if {@code cache} was not built as a {@code type}: a name holds a single cache
+     */
+    private static <C> C as( Class<C> type, String name, Object cache ) {
+        if ( !type.isInstance( cache ) )
+            throw new IllegalStateException( "Cannot use the cache " + name + " as a " + type.getSimpleName()
+                    + ": it was already built as a " + typeNameOf( cache ) );
+        return (C) cache;
+    }
+
+    private static String typeNameOf( Object cache ) {
+        if ( cache instanceof AsyncLoadingCache ) return AsyncLoadingCache.class.getSimpleName();
+        if ( cache instanceof LoadingCache ) return LoadingCache.class.getSimpleName();
+        return Cache.class.getSimpleName();
+    }
+
+    private static Cache synchronousViewOf( Object cache ) {
+        return cache instanceof AsyncLoadingCache ? ((AsyncLoadingCache) cache).synchronous() : (Cache) cache;
     }
 
-    private Caffeine<Object, Object> createNewCacheBuilder(String name ) {
+    /**
+     * @param async whether the builder will build an {@link AsyncLoadingCache}. Caffeine does not let
+     *              such caches have a {@link CacheWriter}, so their tiers are kept up to date by a
+     *              {@link RemovalListener} instead.
+     */
+    private CacheBuild createNewCacheBuilder( CacheBuild build, boolean async ) {
+        final String name = build.name;
         log.info( "Creating cache named " + name );
 
-        final Caffeine<Object, Object> builder = Caffeine.newBuilder();
-        configureExpirationBySize( name, builder );
+        final Caffeine<Object, Object> builder = build.builder;
+        build.hotKeys = configureHotKeysFor( name );
+        configureExpirationBySize( name, builder, build.hotKeys );
         configureExpirationByTime( name, builder );
-        configureWriterFor( name, builder );
-
-        return builder;
+        build.offHeapStore = configureOffHeapTierFor( name );
+        build.negativeCache = configureNegativeCacheFor( name );
+        build.nearCache = configureNearCacheFor( name );
+        RemovalListener tiersListener = null;
+        boolean hasWriter = false;
+        if ( async )
+            tiersListener = configureTiersListenerFor( build );
+        else
+            hasWriter = configureWriterFor( build );
+        configureReferencesFor( name, builder, hasWriter );
+        configureExecutorFor( name, builder );
+        build.metrics = configureStatsFor( name, builder );
+        configureRemovalListenerFor( name, builder, build.metrics, tiersListener );
+
+        return build;
     }
 
-    private void configureExpirationBySize(String name, Caffeine<Object, Object> builder) {
+    private void configureExpirationBySize(String name, Caffeine<Object, Object> builder, HotKeyTracker hotKeys) {
         final long size = getLong( "server.cache." + name + ".maximum-size" ),
                    weight = getLong( "server.cache." + name + ".maximum-weight" );
 
         if ( size > 0 ) {
             log.info( "  >> maximum-size: " + size );
-            builder.maximumSize(size);
+            if ( hotKeys != null && hotKeys.pinHotKeys )
+                builder.maximumWeight(size).weigher( hotKeys.excludingPinnedKeys( (key, value) -> 1 ) );
+            else
+                builder.maximumSize(size);
         }
         if ( weight > 0 ) {
             log.info( "  >> maximum-weight: " + weight );
             builder.maximumWeight(weight);
+            configureWeigherFor( name, builder, hotKeys );
+        }
+    }
+
+    /**
+     * Weak keys are compared by identity, thus they are only useful for caches whose keys are
+     * the very same instances used to read them. Caffeine does not support them on caches with a
+     * {@link CacheWriter}, which synchronous caches get when a {@link CacheWriter}, {@link BatchCacheWriter}
+     * or {@link SecondLevelStore} is named after them, or when {@code off-heap} or {@code negative} is set.
+     * Weak and soft values cannot be used with {@link AsyncLoadingCache}s.
+     *
+     * @throws IllegalArgumentException if weak keys were set on a cache with a {@link CacheWriter}
+     */
+    private void configureReferencesFor( String name, Caffeine<Object, Object> builder, boolean hasWriter ){
+        if ( config.getBoolean( "server.cache." + name + ".weak-keys", false ) ) {
+            if ( hasWriter )
+                throw new IllegalArgumentException( "Cannot use weak-keys on " + name + ": Caffeine does not support them on caches "
+                        + "with a CacheWriter, required by its writer, write-behind, near-cache, off-heap or negative tiers" );
+            log.info( "  >> weak-keys: true" );
+            builder.weakKeys();
         }
+        if ( config.getBoolean( "server.cache." + name + ".weak-values", false ) ) {
+            log.info( "  >> weak-values: true" );
+            builder.weakValues();
+        }
+        if ( config.getBoolean( "server.cache." + name + ".soft-values", false ) ) {
+            log.info( "  >> soft-values: true" );
+            builder.softValues();
+        }
+    }
+
+    /**
+     * Lets the {@link AdaptiveSizing} resize the cache between {@code server.cache.<name>.adaptive.minimum}
+     * and {@code server.cache.<name>.adaptive.maximum}. The controller itself is configured by
+     * {@code server.cache.adaptive-sizing}: {@code interval} (in milliseconds, which is also the minimum
+     * time between two shrinks), {@code low-watermark}, {@code high-watermark}, {@code shrink-ratio} and {@code grow-ratio}.
+     */
+    private void configureAdaptiveSizingFor( String name, Cache cache ){
+        final long minimum = getLong( "server.cache." + name + ".adaptive.minimum", 1 ),
+                   maximum = getLong( "server.cache." + name + ".adaptive.maximum" );
+        if ( maximum <= 0 )
+            return;
+
+        if ( minimum > maximum )
+            throw new IllegalArgumentException( "The adaptive minimum of " + name + " is greater than its maximum" );
+        if ( adaptiveSizing().register( name, cache, minimum, maximum ) )
+            log.info( "  >> adaptive: minimum " + minimum + ", maximum " + maximum );
+        else
+            log.warn( "  >> Ignoring adaptive sizing: it requires maximum-size or maximum-weight" );
+    }
+
+    private synchronized AdaptiveSizing adaptiveSizing(){
+        if ( adaptiveSizing == null ) {
+            final long interval = getLong( "server.cache.adaptive-sizing.interval", 5000 );
+            adaptiveSizing = new AdaptiveSizing(
+                getDouble( "server.cache.adaptive-sizing.low-watermark", 0.6 ),
+                getDouble( "server.cache.adaptive-sizing.high-watermark", 0.85 ),
+                getDouble( "server.cache.adaptive-sizing.shrink-ratio", 0.2 ),
+                getDouble( "server.cache.adaptive-sizing.grow-ratio", 0.1 ),
+                interval, AdaptiveSizing::measureHeapOccupancy );
+            adaptiveSizing.start( interval );
+        }
+        return adaptiveSizing;
+    }
+
+    /**
+     * Caches bounded by {@code maximum-weight} are weighed by the {@link Weigher} named after them or,
+     * when {@code weigher} is {@code memory-estimating}, by the {@link MemoryEstimatingWeigher}. The latter
+     * walks every entry written, thus is opt-in: see the {@code WeigherBenchmark} for its cost.
+     *
+     * @throws IllegalArgumentException if neither is available
+     */
+    private void configureWeigherFor( String name, Caffeine<Object, Object> builder, HotKeyTracker hotKeys ){
+        Weigher weigher = components.named( Weigher.class, name );
+        if ( weigher != null )
+            log.info( "  >> Configured with Weigher: " + weigher );
+        else if ( "memory-estimating".equals( config.getString( "server.cache." + name + ".weigher", null ) ) ) {
+            log.info( "  >> weigher: memory-estimating" );
+            weigher = new MemoryEstimatingWeigher();
+        } else
+            throw new IllegalArgumentException( "Cannot bound " + name + " by maximum-weight: "
+                    + "no Weigher is named after it and its weigher is not memory-estimating" );
+        builder.weigher( hotKeys != null && hotKeys.pinHotKeys ? hotKeys.excludingPinnedKeys( weigher ) : weigher );
+    }
+
+    /**
+     * Tracks the {@code server.cache.<name>.hot-keys.top} most read keys of the cache, sampling one of every
+     * {@code hot-keys.sample-every} reads (defaults to 16). When {@code hot-keys.pin} is set, hot keys are
+     * not evicted by size.
+     */
+    private HotKeyTracker configureHotKeysFor( String name ){
+        final int top = (int) getLong( "server.cache." + name + ".hot-keys.top" );
+        if ( top <= 0 )
+            return null;
+
+        final int sampleEvery = (int) getLong( "server.cache." + name + ".hot-keys.sample-every", 16 );
+        final boolean pin = config.getBoolean( "server.cache." + name + ".hot-keys.pin", false );
+        log.info( "  >> hot-keys: top " + top + ", sample-every " + sampleEvery + ", pin " + pin );
+        return new HotKeyTracker( top, sampleEvery, pin );
     }
 
     private void configureExpirationByTime( String name, Caffeine<Object, Object> builder ){
         final TimeUnit expirationTimeUnit = TimeUnit.valueOf( config.getString( "server.cache." + name + ".expiration.time-unit", "MINUTES" ) );
+        final Expiry expiry = getExpiryFor( name, expirationTimeUnit );
+        if ( expiry != null ) {
+            builder.expireAfter( expiry );
+            return;
+        }
 
         final long accessTime = getLong( "server.cache." + name + ".expiration.time-after-access" ),
                    writeTime = getLong( "server.cache." + name + ".expiration.time-after-write" );
@@ -97,38 +346,414 @@ public class CacheProducer {
         }
     }
 
-    private void configureWriterFor( String name, Caffeine<Object, Object> builder ){
-        final CacheWriter writer = cdi.load(CacheWriter.class, w -> name.equals( getNameFrom(w) ) );
-        if ( writer != null ) {
+    private void configureExecutorFor( String name, Caffeine<Object, Object> builder ){
+        final Executor executor = executors.executorFor( name );
+        if ( executor != null ) {
+            log.info( "  >> executor: " + executor );
+            builder.executor( executor );
+        }
+    }
+
+    private CacheMetrics configureStatsFor( String name, Caffeine<Object, Object> builder ){
+        final Object recordStats = config.getObject( "server.cache." + name + ".record-stats" );
+        if ( recordStats != null && Boolean.valueOf( recordStats.toString() ) ) {
+            log.info( "  >> record-stats: true" );
+            final CacheMetrics cacheMetrics = new CacheMetrics( name );
+            builder.recordStats( () -> cacheMetrics );
+            return cacheMetrics;
+        }
+        return null;
+    }
+
+    /**
+     * Notifies the tiers of an {@link AsyncLoadingCache}, its {@link CacheMetrics}, the
+     * {@link RemovalListener} named after the cache and the chained ones of removals.
+     */
+    private void configureRemovalListenerFor( String name, Caffeine<Object, Object> builder, CacheMetrics cacheMetrics, RemovalListener tiersListener ){
+        final RemovalListener named = components.named( RemovalListener.class, name );
+        if ( named != null )
+            log.info( "  >> Configured with RemovalListener: " + named );
+
+        final List<RemovalListener> chain = chainedListeners.get( name );
+        final RemovalListener chained = chain == null ? null
+                : (key, value, cause) -> chain.forEach( listener -> listener.onRemoval( key, value, cause ) );
+        final RemovalListener listener = both( tiersListener, both( cacheMetrics, both( named, chained ) ) );
+        if ( listener != null )
+            builder.removalListener( listener );
+    }
+
+    /**
+     * Notifies {@code listener} of the removals of the cache {@code name}, along with the {@link RemovalListener}
+     * named after it.
+     *
+     * @throws IllegalArgumentException if the cache does not accept chained listeners
+     */
+    void chainRemovalListener( String name, RemovalListener listener ) {
+        final List<RemovalListener> chain = chainedListeners.get( name );
+        if ( chain == null )
+            throw new IllegalArgumentException( "The cache " + name + " does not accept chained removal listeners" );
+        chain.add( listener );
+    }
+
+    /**
+     * @return a listener notifying {@code first} then {@code second}, or the only one which is not {@code null}
+     */
+    private static RemovalListener both( RemovalListener first, RemovalListener second ){
+        if ( first == null ) return second;
+        if ( second == null ) return first;
+        return (key, value, cause) -> {
+            first.onRemoval( key, value, cause );
+            second.onRemoval( key, value, cause );
+        };
+    }
+
+    private void configureRefreshFor( String name, Caffeine<Object, Object> builder ){
+        final TimeUnit timeUnit = TimeUnit.valueOf( config.getString( "server.cache." + name + ".expiration.time-unit", "MINUTES" ) );
+        final long refreshTime = getLong( "server.cache." + name + ".refresh-after-write" );
+        if ( refreshTime > 0 ) {
+            log.info( "  >> refresh-after-write: " + refreshTime + " " + timeUnit );
+            builder.refreshAfterWrite( refreshTime, timeUnit );
+        }
+    }
+
+    /**
+     * @return the {@link Expiry} named after the cache, a {@link SessionExpiry} if the cache has
+     *         different expiration times for anonymous and authenticated sessions, or {@code null}
+     */
+    private Expiry getExpiryFor( String name, TimeUnit expirationTimeUnit ){
+        final Expiry expiry = components.named( Expiry.class, name );
+        if ( expiry != null ) {
+            log.info( "  >> Configured with Expiry: " + expiry );
+            return expiry;
+        }
+
+        long anonymousTime = getLong( "server.cache." + name + ".expiration.anonymous-time-after-access" ),
+             authenticatedTime = getLong( "server.cache." + name + ".expiration.authenticated-time-after-access" );
+        if ( anonymousTime <= 0 && authenticatedTime <= 0 )
+            return null;
+
+        if ( anonymousTime <= 0 ) anonymousTime = authenticatedTime;
+        if ( authenticatedTime <= 0 ) authenticatedTime = anonymousTime;
+        log.info( "  >> expiration.anonymous-time-after-access: " + anonymousTime + " " + expirationTimeUnit );
+        log.info( "  >> expiration.authenticated-time-after-access: " + authenticatedTime + " " + expirationTimeUnit );
+        return new SessionExpiry( expirationTimeUnit.toNanos( anonymousTime ), expirationTimeUnit.toNanos( authenticatedTime ) );
+    }
+
+    private NegativeCache configureNegativeCacheFor( String name ){
+        final long timeToLive = getLong( "server.cache." + name + ".negative.time-to-live" ),
+                   maximumSize = getLong( "server.cache." + name + ".negative.maximum-size" );
+        if ( timeToLive > 0 ) {
+            final TimeUnit timeUnit = TimeUnit.valueOf( config.getString( "server.cache." + name + ".negative.time-unit", "SECONDS" ) );
+            log.info( "  >> negative: time-to-live " + timeToLive + " " + timeUnit + ", maximum-size " + maximumSize );
+            return new NegativeCache( timeToLive, timeUnit, maximumSize );
+        }
+        return null;
+    }
+
+    /**
+     * Turns the cache into a near-cache when a {@link SecondLevelStore} is named after it.
+     */
+    private NearCache configureNearCacheFor( String name ){
+        final SecondLevelStore store = components.named( SecondLevelStore.class, name );
+        if ( store == null )
+            return null;
+
+        InvalidationChannel channel = components.named( InvalidationChannel.class, name );
+        if ( channel == null )
+            channel = new LoopbackInvalidationChannel();
+        log.info( "  >> near-cache: second level " + store + ", invalidation channel " + channel );
+        return new NearCache( name, store, channel );
+    }
+
+    private OffHeapStore configureOffHeapTierFor( String name ){
+        final long maxBytes = getLong( "server.cache." + name + ".off-heap.max-bytes" );
+        if ( maxBytes > 0 ) {
+            log.info( "  >> off-heap.max-bytes: " + maxBytes );
+            return new OffHeapStore( maxBytes );
+        }
+        return null;
+    }
+
+    private boolean configureWriterFor( CacheBuild build ){
+        final String name = build.name;
+        CacheWriter writer = components.named( CacheWriter.class, name );
+        final BatchCacheWriter batchWriter = components.named( BatchCacheWriter.class, name );
+        if ( batchWriter != null ) {
+            if ( writer != null )
+                log.warn( "  >> Ignoring CacheWriter " + writer + " in favor of the BatchCacheWriter" );
+            writer = build.writeBehind = createWriteBehindWriter( name, batchWriter );
+        } else if ( writer != null )
             log.info( "  >> Configured with CacheWriter: " + writer );
-            builder.writer(writer);
-        } else
+        else
             log.info( "  >> No CacheWriter configured" );
+
+        if ( build.nearCache != null )
+            writer = build.nearCache.writer( writer );
+        if ( build.negativeCache != null )
+            writer = build.negativeCache.writer( writer );
+        if ( build.offHeapStore != null )
+            writer = build.offHeapStore.writer( writer );
+        if ( writer != null && build.hotKeys != null && build.hotKeys.pinHotKeys )
+            writer = build.hotKeys.skippingReweighs( writer );
+        if ( writer != null )
+            build.builder.writer(writer);
+        return writer != null;
     }
 
-    private LoadingCache buildLoadingCache(String name, Caffeine<Object, Object> builder) {
-        CacheLoader cacheLoader = cdi.load( CacheLoader.class, l -> name.equals( getNameFrom(l) ) );
+    /**
+     * Keeps the tiers of an {@link AsyncLoadingCache} up to date through a {@link RemovalListener}, as
+     * Caffeine rejects asynchronous caches with a {@link CacheWriter}. Removal listeners run after the
+     * entry was removed, on the cache executor, thus tiers are updated on a best effort basis.
+     *
+     * @throws IllegalArgumentException if a {@link CacheWriter} or a {@link BatchCacheWriter} is named after the cache
+     */
+    private RemovalListener configureTiersListenerFor( CacheBuild build ){
+        final String name = build.name;
+        if ( components.named( CacheWriter.class, name ) != null || components.named( BatchCacheWriter.class, name ) != null )
+            throw new IllegalArgumentException( "Cannot build " + name + " as an AsyncLoadingCache: "
+                    + "Caffeine does not support CacheWriters on asynchronous caches" );
+
+        RemovalListener listener = null;
+        if ( build.nearCache != null )
+            listener = build.nearCache.removalListener();
+        if ( build.negativeCache != null )
+            listener = both( listener, build.negativeCache.removalListener() );
+        if ( build.offHeapStore != null )
+            listener = both( listener, build.offHeapStore.removalListener() );
+        return listener;
+    }
+
+    private WriteBehindCacheWriter createWriteBehindWriter( String name, BatchCacheWriter batchWriter ){
+        final int batchSize = (int) getLong( "server.cache." + name + ".write-behind.batch-size", 100 ),
+                  queueCapacity = (int) getLong( "server.cache." + name + ".write-behind.queue-capacity", 10000 ),
+                  maxRetries = (int) getLong( "server.cache." + name + ".write-behind.max-retries", WriteBehindCacheWriter.DEFAULT_MAX_RETRIES );
+        final long maxDelay = getLong( "server.cache." + name + ".write-behind.max-delay", 1000 ),
+                   retryDelay = getLong( "server.cache." + name + ".write-behind.retry-delay", WriteBehindCacheWriter.DEFAULT_RETRY_DELAY_IN_MILLIS );
+
+        log.info( "  >> Configured with BatchCacheWriter: " + batchWriter );
+        log.info( "  >> write-behind: batch-size " + batchSize + ", max-delay " + maxDelay + "ms, queue-capacity " + queueCapacity
+                + ", max-retries " + maxRetries + ", retry-delay " + retryDelay + "ms" );
+
+        final WriteBehindCacheWriter writer = new WriteBehindCacheWriter( name, batchWriter, batchSize, maxDelay, queueCapacity, maxRetries, retryDelay );
+        Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+            try {
+                writer.close();
+            } catch ( InterruptedException cause ) {
+                log.warn( "Interrupted while draining the write-behind queue of " + name );
+            }
+        }, name + "-write-behind-drain" ) );
+        return writer;
+    }
+
+    private LoadingCache buildLoadingCache( CacheBuild build ) {
+        final String name = build.name;
+        configureRefreshFor( name, build.builder );
+        CacheLoader cacheLoader = components.named( CacheLoader.class, name );
         if ( cacheLoader == null ) {
             log.warn( "  >> No CacheLoader defined for. Ignoring...");
             cacheLoader = EMPTY_CACHE_LOADER;
         } else
             log.info( "  >> Configured with CacheLoader: " + cacheLoader );
-        return builder.build(cacheLoader);
+
+        final int maxBatchSize = getMaxBatchSize( name );
+        if ( maxBatchSize > 0 )
+            cacheLoader = BatchingCacheLoader.wrap( cacheLoader, executors.executorOrDefaultFor( name ), maxBatchSize, getMaxBatchWait( name ) );
+
+        if ( build.nearCache != null )
+            cacheLoader = build.nearCache.loader( cacheLoader );
+        if ( build.negativeCache != null )
+            cacheLoader = build.negativeCache.loader( cacheLoader );
+        if ( build.offHeapStore != null )
+            cacheLoader = build.offHeapStore.loader( cacheLoader );
+        final LoadingCache cache = build.builder.build(cacheLoader);
+        if ( build.nearCache != null )
+            build.nearCache.listen( cache );
+        onCacheBuilt( build, cache );
+        final AccessRecorder recorder = accessRecorderFor( build );
+        return registered( build, recorder != null ? new TracedLoadingCache( cache, recorder ) : cache );
     }
 
-    private AsyncLoadingCache buildAsyncLoadingCache(String name, Caffeine<Object, Object> builder) {
-        AsyncCacheLoader cacheLoader = cdi.load( AsyncCacheLoader.class, l -> name.equals( getNameFrom(l) ) );
+    private AsyncLoadingCache buildAsyncLoadingCache( CacheBuild build ) {
+        final String name = build.name;
+        configureRefreshFor( name, build.builder );
+        AsyncCacheLoader cacheLoader = components.named( AsyncCacheLoader.class, name );
         if ( cacheLoader == null ) {
             log.warn( "  >> No CacheLoader defined. Ignoring...");
             cacheLoader = EMPTY_ASYNC_CACHE_LOADER;
         } else
             log.info( "  >> Configured with CacheLoader: " + cacheLoader );
-        return builder.buildAsync(cacheLoader);
+
+        final int maxBatchSize = getMaxBatchSize( name );
+        if ( maxBatchSize > 0 )
+            cacheLoader = BatchingCacheLoader.wrap( cacheLoader, executors.executorOrDefaultFor( name ), maxBatchSize, getMaxBatchWait( name ) );
+
+        if ( build.nearCache != null )
+            cacheLoader = build.nearCache.asyncLoader( cacheLoader );
+        if ( build.negativeCache != null )
+            cacheLoader = build.negativeCache.asyncLoader( cacheLoader );
+        if ( build.offHeapStore != null )
+            cacheLoader = build.offHeapStore.asyncLoader( cacheLoader );
+        AsyncLoadingCache cache = build.builder.buildAsync( CacheExecutors.failingOnRejection( cacheLoader ) );
+        if ( build.nearCache != null ) {
+            build.nearCache.listen( cache );
+            cache = build.nearCache.sharingWrites( cache );
+        }
+        onCacheBuilt( build, cache.synchronous() );
+        final AccessRecorder recorder = accessRecorderFor( build );
+        return registered( build, recorder != null ? new TracedAsyncLoadingCache( cache, recorder ) : cache );
+    }
+
+    private void onCacheBuilt( CacheBuild build, Cache cache ) {
+        if ( build.hotKeys != null )
+            build.hotKeys.attach( cache );
+        configureAdaptiveSizingFor( build.name, cache );
+    }
+
+    private Cache buildCache( CacheBuild build ) {
+        final Cache cache = build.builder.build();
+        if ( build.nearCache != null )
+            build.nearCache.listen( cache );
+        onCacheBuilt( build, cache );
+        final AccessRecorder recorder = accessRecorderFor( build );
+        return registered( build, recorder != null ? new TracedCache( cache, recorder ) : cache );
+    }
+
+    private <T> T registered( CacheBuild build, T cache ) {
+        builds.put( cache, build );
+        return cache;
+    }
+
+    /**
+     * @return what observes the accesses to the cache: its access trace, its hot key tracker, both or {@code null}
+     */
+    private AccessRecorder accessRecorderFor( CacheBuild build ) {
+        return AccessRecorder.both( configureTraceFor( build.name ), build.hotKeys );
+    }
+
+    /**
+     * Starts recording the accesses to the cache into {@code server.cache.<name>.trace.file}, when
+     * defined, through a ring buffer of {@code trace.buffer-size} events (defaults to 65536).
+     */
+    private AccessTraceRecorder configureTraceFor( String name ) {
+        final String file = config.getString( "server.cache." + name + ".trace.file", null );
+        if ( file == null )
+            return null;
+
+        final int bufferSize = (int) getLong( "server.cache." + name + ".trace.buffer-size", 1 << 16 );
+        log.info( "  >> trace: file " + file + ", buffer-size " + bufferSize );
+        try {
+            final AccessTraceRecorder recorder = new AccessTraceRecorder( Paths.get( file ), bufferSize );
+            Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+                try {
+                    recorder.close();
+                } catch ( IOException cause ) {
+                    log.error( "Could not close the access trace of " + name, cause );
+                }
+            }, name + "-trace-close" ) );
+            return recorder;
+        } catch ( IOException cause ) {
+            log.error( "Could not trace the accesses to " + name, cause );
+            return null;
+        }
+    }
+
+    private int getMaxBatchSize( String name ) {
+        final int maxBatchSize = (int) getLong( "server.cache." + name + ".batch-loading.max-batch-size" );
+        if ( maxBatchSize > 0 )
+            log.info( "  >> batch-loading: max-batch-size " + maxBatchSize + ", max-wait " + getMaxBatchWait( name ) + "ms" );
+        return maxBatchSize;
+    }
+
+    private long getMaxBatchWait( String name ) {
+        return getLong( "server.cache." + name + ".batch-loading.max-wait", 5 );
+    }
+
+    /**
+     * @return a synchronous view of every cache built so far, indexed by its name
+     */
+    Map<String, Cache> registeredCaches() {
+        final Map<String, Cache> registered = new TreeMap<>();
+        caches.asMap().forEach( (name, cache) -> registered.put( name, synchronousViewOf( cache ) ) );
+        return registered;
     }
 
-    private String getNameFrom( @NonNull Object obj ) {
-        final Named named = obj.getClass().getAnnotation(Named.class);
-        return ( named == null ) ? null : named.value();
+    /**
+     * @return a synchronous view of the cache named {@code name}. If it does not exist yet, it is built with the
+     *         type {@link #typeOf(String)} gives it, so loading caches injected later share its entries.
+     */
+    Cache cacheNamed( String name ) {
+        return synchronousViewOf( initialize( name, typeOf( name ) ) );
+    }
+
+    /**
+     * @throws IllegalStateException if the cache {@code name} was already built as another type
+     */
+    LoadingCache loadingCacheNamed( String name ) {
+        return as( LoadingCache.class, name, initialize( name, "loading-cache" ) );
+    }
+
+    /**
+     * @throws IllegalStateException if the cache {@code name} was already built as a synchronous cache
+     */
+    AsyncLoadingCache asyncCacheNamed( String name ) {
+        return as( AsyncLoadingCache.class, name, initialize( name, "async-loading-cache" ) );
+    }
+
+    /**
+     * @return a synchronous view of the cache named {@code name}, or {@code null} if it was not built yet
+     */
+    Cache existingCacheNamed( String name ) {
+        final Object cache = caches.asMap().get( name );
+        return cache != null ? synchronousViewOf( cache ) : null;
+    }
+
+    /**
+     * @return the hot key tracker of the cache {@code name}, or {@code null} if it does not track hot keys
+     */
+    HotKeyTracker hotKeysOf( String name ) {
+        final CacheBuild build = buildOf( name );
+        return build != null ? build.hotKeys : null;
+    }
+
+    /**
+     * @return the write-behind writer of the cache {@code name}, or {@code null} if it has no {@link BatchCacheWriter}
+     */
+    WriteBehindCacheWriter writeBehindOf( String name ) {
+        final CacheBuild build = buildOf( name );
+        return build != null ? build.writeBehind : null;
+    }
+
+    /**
+     * @return whether every entry of the cache {@code name} weighs one, except for its pinned hot keys:
+     *         pinning turns the {@code maximum-size} the cache was built with into a maximum weight
+     */
+    boolean weighsEveryEntryAsOne( String name ) {
+        final HotKeyTracker hotKeys = hotKeysOf( name );
+        return hotKeys != null && hotKeys.pinHotKeys && getLong( "server.cache." + name + ".maximum-weight" ) <= 0;
+    }
+
+    /**
+     * Stops resizing the cache {@code name} according to the heap occupancy.
+     */
+    synchronized void disableAdaptiveSizingOf( String name ) {
+        if ( adaptiveSizing != null && adaptiveSizing.unregister( name ) )
+            log.info( "Adaptive sizing disabled for cache " + name );
+    }
+
+    /**
+     * @return the metrics of the cache {@code name}, or {@code null} if it does not record stats
+     */
+    CacheMetrics metricsOf( String name ) {
+        final CacheBuild build = buildOf( name );
+        return build != null ? build.metrics : null;
+    }
+
+    /**
+     * @return how the cache {@code name} listed by {@link #registeredCaches()} was built, or {@code null} if it was not
+     */
+    private CacheBuild buildOf( String name ) {
+        final Object cache = caches.asMap().get( name );
+        return cache != null ? builds.get( cache ) : null;
     }
 
     private String getNameFrom( @NonNull ProviderContext context ) {
@@ -139,9 +764,18 @@ public class CacheProducer {
     }
 
     private long getLong( String path ) {
+        return getLong( path, 0 );
+    }
+
+    private double getDouble( String path, double defaultValue ) {
+        final Object value = config.getObject( path );
+        return value == null ? defaultValue : Double.valueOf( value.toString() );
+    }
+
+    private long getLong( String path, long defaultValue ) {
         Object v = config.getObject( path );
         if ( v == null )
-            return 0;
+            return defaultValue;
         if ( v instanceof Integer )
             return Long.valueOf( (Integer)v );
         if ( v instanceof String )
@@ -149,34 +783,37 @@ public class CacheProducer {
         return (Long) v;
     }
 
-    @RequiredArgsConstructor
-    class LazyCache implements Cache<Object, Object> {
-
-        private final String name;
-
-        @Getter(lazy = true)
-        private final Cache target = createCache();
+    /**
+     * The builder of a cache, along with the tiers, hot key tracker and metrics it is built with.
+     * They are kept per cache instance: caches built with the same name never share them.
+     */
+    static class CacheBuild {
 
-        private Cache createCache() {
-            return caches.computeIfAbsent( name, n -> createNewCacheBuilder( name ).build() );
+        final String name;
+        final Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        HotKeyTracker hotKeys;
+        OffHeapStore offHeapStore;
+        NegativeCache negativeCache;
+        NearCache nearCache;
+        WriteBehindCacheWriter writeBehind;
+        CacheMetrics metrics;
+
+        CacheBuild( String name ) {
+            this.name = name;
         }
 
-        @Delegate Cache getCache(){ return getTarget(); }
-    }
-
-    @RequiredArgsConstructor
-    class LazyAsyncLoadingCache implements AsyncLoadingCache<Object, Object> {
-
-        private final String name;
-
-        @Getter(lazy = true)
-        private final AsyncLoadingCache target = createCache();
-
-        private AsyncLoadingCache createCache() {
-            return asyncLoadingCaches.computeIfAbsent( name,
-                    n -> buildAsyncLoadingCache( name, createNewCacheBuilder( name ) ));
+        /**
+         * Stops the hot key tracker and the write-behind flusher of a cache that will not be used.
+         */
+        void discard() {
+            if ( hotKeys != null )
+                hotKeys.close();
+            if ( writeBehind != null )
+                try {
+                    writeBehind.close();
+                } catch ( InterruptedException cause ) {
+                    Thread.currentThread().interrupt();
+                }
         }
-
-        @Delegate AsyncLoadingCache getCache(){ return getTarget(); }
     }
 }
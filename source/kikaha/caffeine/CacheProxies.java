@@ -0,0 +1,88 @@
+package kikaha.caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Creates proxies that cache the results of methods annotated with {@link Cached}, {@link CachePut}
+ * and {@link CacheEvict}, using the caches built by {@link CacheProducer}. Annotations are read from
+ * the interface methods or from their implementations. Since proxies implement the interface, beans
+ * are usually exposed through a producer:
+ * <pre>
+ * &#64;Produces PriceService producePriceService(){
+ *     return cacheProxies.proxy( PriceService.class, new DatabasePriceService() );
+ * }
+ * </pre>
+ * Methods declared to return a {@link CompletableFuture} or a {@link CompletionStage} are cached on
+ * asynchronous caches; any other method, including those returning {@code Object}, on synchronous ones.
+ */
+@Singleton @Slf4j
+public class CacheProxies {
+
+    @Inject CacheProducer cacheProducer;
+
+    /**
+     * @return a proxy of {@code target} that caches the results of its annotated methods
+     * @throws IllegalArgumentException if {@code type} is not an interface
+     */
+    public <T> T proxy( Class<T> type, T target ) {
+        if ( !type.isInterface() )
+            throw new IllegalArgumentException( "Only interfaces can be proxied: " + type );
+
+        final Map<Method, CacheInterceptor.Operation> operations = new HashMap<>();
+        for ( final Method method : type.getMethods() ) {
+            final CacheInterceptor.Operation operation = operationOf( method, implementationOf( method, target ) );
+            if ( operation != null )
+                operations.put( method, operation );
+        }
+
+        log.info( "Caching " + operations.size() + " methods of " + target );
+        return type.cast( Proxy.newProxyInstance( type.getClassLoader(), new Class<?>[]{ type },
+                new CacheInterceptor( target, operations ) ) );
+    }
+
+    private CacheInterceptor.Operation operationOf( Method method, Method implementation ) {
+        final Class<?> returnType = method.getReturnType();
+        final boolean returnsFuture = CompletionStage.class.isAssignableFrom( returnType )
+                                   && returnType.isAssignableFrom( CompletableFuture.class );
+
+        final Cached cached = annotationOf( Cached.class, method, implementation );
+        if ( cached != null )
+            return returnsFuture
+                ? new CacheInterceptor.CachedFuture( cacheProducer.asyncCacheNamed( cached.value() ) )
+                : new CacheInterceptor.CachedResult( cacheProducer.cacheNamed( cached.value() ) );
+
+        final CachePut put = annotationOf( CachePut.class, method, implementation );
+        if ( put != null )
+            return returnsFuture
+                ? new CacheInterceptor.PutFuture( cacheProducer.asyncCacheNamed( put.value() ) )
+                : new CacheInterceptor.PutResult( cacheProducer.cacheNamed( put.value() ) );
+
+        final CacheEvict evict = annotationOf( CacheEvict.class, method, implementation );
+        if ( evict != null )
+            return new CacheInterceptor.Evict( cacheProducer, evict.value(), evict.allEntries() );
+        return null;
+    }
+
+    private static <A extends Annotation> A annotationOf( Class<A> type, Method method, Method implementation ) {
+        final A annotation = method.getAnnotation( type );
+        return annotation != null || implementation == null ? annotation : implementation.getAnnotation( type );
+    }
+
+    private static Method implementationOf( Method method, Object target ) {
+        try {
+            return target.getClass().getMethod( method.getName(), method.getParameterTypes() );
+        } catch ( NoSuchMethodException cause ) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package kikaha.caffeine;
+
+import java.lang.annotation.*;
+
+/**
+ * Always invokes the annotated method and stores its result on the cache named {@link #value()},
+ * indexed by the method arguments. Useful to refresh entries read by {@link Cached} methods.
+ *
+ * @see CacheProxies
+ */
+@Documented
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.METHOD )
+public @interface CachePut {
+
+    /**
+     * @return the name of the cache, as configured under {@code server.cache}
+     */
+    String value();
+}
@@ -0,0 +1,41 @@
+package kikaha.caffeine;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A thread-safe registry of named caches. Each cache is built exactly once, no matter
+ * how many threads ask for it at the same time. Lookups of already built caches are lock-free.
+ */
+class CacheRegistry<C> {
+
+    private final ConcurrentMap<String, C> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * @return the cache named {@code name}, building it with {@code factory} if it does not exist yet
+     */
+    C resolve( String name, Function<String, C> factory ) {
+        C cache = caches.get( name );
+        if ( cache != null )
+            return cache;
+
+        // builders may resolve other caches (e.g. loaders injecting caches), so a
+        // lock per name is used instead of computing the value inside the map
+        synchronized ( locks.computeIfAbsent( name, n -> new Object() ) ) {
+            cache = caches.get( name );
+            if ( cache == null ) {
+                cache = factory.apply( name );
+                caches.put( name, cache );
+            }
+            return cache;
+        }
+    }
+
+    Map<String, C> asMap() {
+        return Collections.unmodifiableMap( caches );
+    }
+}
@@ -0,0 +1,85 @@
+package kikaha.caffeine;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * New sizing and expiration settings for a live cache. Settings left {@code null} are not changed.
+ * Expiration times are kept in nanoseconds, whatever the unit they were given in.
+ *
+ * @see CacheManagement#reconfigure(String, CacheSettings)
+ */
+public class CacheSettings {
+
+    Long maximumSize, maximumWeight, timeAfterAccessInNanos, timeAfterWriteInNanos;
+
+    public CacheSettings maximumSize( long maximumSize ) {
+        this.maximumSize = requireNonNegative( "maximum-size", maximumSize );
+        return this;
+    }
+
+    public CacheSettings maximumWeight( long maximumWeight ) {
+        this.maximumWeight = requireNonNegative( "maximum-weight", maximumWeight );
+        return this;
+    }
+
+    public CacheSettings timeAfterAccess( long time, TimeUnit timeUnit ) {
+        this.timeAfterAccessInNanos = timeUnit.toNanos( requireNonNegative( "time-after-access", time ) );
+        return this;
+    }
+
+    public CacheSettings timeAfterWrite( long time, TimeUnit timeUnit ) {
+        this.timeAfterWriteInNanos = timeUnit.toNanos( requireNonNegative( "time-after-write", time ) );
+        return this;
+    }
+
+    boolean isEmpty() {
+        return maximumSize == null && maximumWeight == null && timeAfterAccessInNanos == null && timeAfterWriteInNanos == null;
+    }
+
+    /**
+     * Reads the settings named as in {@code application.yml}: {@code maximum-size}, {@code maximum-weight},
+     * {@code time-after-access} and {@code time-after-write}. Each time is read in its own unit,
+     * {@code time-after-access-unit} or {@code time-after-write-unit}, falling back to {@code time-unit}
+     * (defaults to {@code MINUTES}).
+     */
+    static CacheSettings from( Map<String, String> values ) {
+        final CacheSettings settings = new CacheSettings();
+        final TimeUnit timeUnit = parseTimeUnit( "time-unit", values, TimeUnit.MINUTES );
+        if ( values.containsKey( "maximum-size" ) )
+            settings.maximumSize( parseLong( "maximum-size", values ) );
+        if ( values.containsKey( "maximum-weight" ) )
+            settings.maximumWeight( parseLong( "maximum-weight", values ) );
+        if ( values.containsKey( "time-after-access" ) )
+            settings.timeAfterAccess( parseLong( "time-after-access", values ),
+                    parseTimeUnit( "time-after-access-unit", values, timeUnit ) );
+        if ( values.containsKey( "time-after-write" ) )
+            settings.timeAfterWrite( parseLong( "time-after-write", values ),
+                    parseTimeUnit( "time-after-write-unit", values, timeUnit ) );
+        return settings;
+    }
+
+    private static TimeUnit parseTimeUnit( String name, Map<String, String> values, TimeUnit defaultUnit ) {
+        final String unit = values.get( name );
+        return unit == null ? defaultUnit : parse( name, () -> TimeUnit.valueOf( unit.toUpperCase() ) );
+    }
+
+    private static long parseLong( String name, Map<String, String> values ) {
+        return parse( name, () -> Long.valueOf( values.get( name ) ) );
+    }
+
+    private static <T> T parse( String name, Supplier<T> parser ) {
+        try {
+            return parser.get();
+        } catch ( RuntimeException cause ) {
+            throw new IllegalArgumentException( "Invalid " + name, cause );
+        }
+    }
+
+    private static long requireNonNegative( String name, long value ) {
+        if ( value < 0 )
+            throw new IllegalArgumentException( name + " should not be negative: " + value );
+        return value;
+    }
+}
@@ -0,0 +1,66 @@
+package kikaha.caffeine;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import kikaha.config.Config;
+import kikaha.core.modules.http.WebResource;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Tunes a live cache through {@link CacheManagement}. The cache and its new settings are sent as
+ * query parameters, named as in {@code application.yml}:
+ * <pre>
+ * POST /caches/settings?name=session-cache&amp;maximum-size=50000&amp;time-after-access=15&amp;time-unit=MINUTES
+ * </pre>
+ * It answers, as JSON, the state of the cache before and after the change. It is only available
+ * when {@code server.cache.management-endpoint.enabled} is set.
+ */
+@Singleton
+@WebResource( path = "/caches/settings", method = "POST" )
+public class CacheSettingsResource implements HttpHandler {
+
+    @Inject CacheManagement cacheManagement;
+    @Inject Config config;
+
+    @Override
+    public void handleRequest( HttpServerExchange exchange ) {
+        if ( !config.getBoolean( "server.cache.management-endpoint.enabled", false ) ) {
+            exchange.setStatusCode( StatusCodes.NOT_FOUND );
+            exchange.endExchange();
+            return;
+        }
+
+        exchange.getResponseHeaders().put( Headers.CONTENT_TYPE, "application/json" );
+        try {
+            final Map<String, String> parameters = parametersOf( exchange );
+            final String name = parameters.get( "name" );
+            if ( name == null )
+                throw new IllegalArgumentException( "Missing the cache name" );
+            exchange.getResponseSender().send( cacheManagement.reconfigure( name, CacheSettings.from( parameters ) ).toJson() );
+        } catch ( NoSuchElementException cause ) {
+            sendError( exchange, StatusCodes.NOT_FOUND, cause.getMessage() );
+        } catch ( IllegalArgumentException cause ) {
+            sendError( exchange, StatusCodes.BAD_REQUEST, cause.getMessage() );
+        }
+    }
+
+    private static Map<String, String> parametersOf( HttpServerExchange exchange ) {
+        final Map<String, String> parameters = new HashMap<>();
+        for ( final Map.Entry<String, Deque<String>> parameter : exchange.getQueryParameters().entrySet() )
+            parameters.put( parameter.getKey(), parameter.getValue().peekFirst() );
+        return parameters;
+    }
+
+    private static void sendError( HttpServerExchange exchange, int status, String message ) {
+        exchange.setStatusCode( status );
+        exchange.getResponseSender().send( "{\"error\":\"" + CacheStatsResource.escape( String.valueOf( message ) ) + "\"}" );
+    }
+}
@@ -0,0 +1,47 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sizing and expiration of a cache at a given moment. Settings the cache was not built with are {@code null}.
+ */
+@RequiredArgsConstructor
+public class CacheState {
+
+    final long estimatedSize;
+    final Long maximumSize, maximumWeight, timeAfterAccessInNanos, timeAfterWriteInNanos;
+
+    /**
+     * @param boundedBySize whether the maximum of the cache counts its entries, thus is reported as its {@code maximum-size}
+     */
+    static CacheState of( Cache<?, ?> cache, boolean boundedBySize ) {
+        final Policy<?, ?> policy = cache.policy();
+        final Policy.Eviction<?, ?> eviction = policy.eviction().orElse( null );
+        final Policy.Expiration<?, ?> afterAccess = policy.expireAfterAccess().orElse( null ),
+                                      afterWrite = policy.expireAfterWrite().orElse( null );
+        return new CacheState( cache.estimatedSize(),
+            eviction != null && boundedBySize ? eviction.getMaximum() : null,
+            eviction != null && !boundedBySize ? eviction.getMaximum() : null,
+            afterAccess != null ? afterAccess.getExpiresAfter( TimeUnit.NANOSECONDS ) : null,
+            afterWrite != null ? afterWrite.getExpiresAfter( TimeUnit.NANOSECONDS ) : null );
+    }
+
+    String toJson() {
+        final StringBuilder json = new StringBuilder();
+        renderTo( json );
+        return json.toString();
+    }
+
+    void renderTo( StringBuilder json ) {
+        json.append( "{\"estimated-size\":" ).append( estimatedSize )
+            .append( ",\"maximum-size\":" ).append( maximumSize )
+            .append( ",\"maximum-weight\":" ).append( maximumWeight )
+            .append( ",\"time-after-access-nanos\":" ).append( timeAfterAccessInNanos )
+            .append( ",\"time-after-write-nanos\":" ).append( timeAfterWriteInNanos )
+            .append( '}' );
+    }
+}
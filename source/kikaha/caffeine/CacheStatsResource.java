@@ -0,0 +1,158 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import kikaha.config.Config;
+import kikaha.core.modules.http.WebResource;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Exposes, as JSON, the stats of every cache built by {@link CacheProducer}. Caches configured
+ * with {@code record-stats} also report their load latency percentiles (in nanoseconds) and
+ * their removals by cause. Caches configured with {@code hot-keys} also report their hottest keys,
+ * and caches with a {@link BatchCacheWriter} the number of entries it failed to write.
+ * It is only available when {@code server.cache.stats-endpoint.enabled} is set.
+ * <p>
+ * Hot keys are reported by a truncated SHA-256 hash of their {@code toString()}, as the endpoint is not
+ * authenticated. The keys themselves are only reported for caches that set {@code hot-keys.expose-keys},
+ * and never for the session caches, whose keys are session ids.
+ */
+@Singleton
+@WebResource( path = "/caches/stats", method = "GET" )
+public class CacheStatsResource implements HttpHandler {
+
+    static final Set<String> SESSION_CACHES = new HashSet<>( Arrays.asList(
+            CaffeineSessionStore.SESSION_CACHE, AsyncCaffeineSessionStore.SESSION_CACHE ) );
+
+    @Inject CacheProducer cacheProducer;
+    @Inject Config config;
+
+    @Override
+    public void handleRequest( HttpServerExchange exchange ) {
+        if ( !config.getBoolean( "server.cache.stats-endpoint.enabled", false ) ) {
+            exchange.setStatusCode( StatusCodes.NOT_FOUND );
+            exchange.endExchange();
+            return;
+        }
+
+        exchange.getResponseHeaders().put( Headers.CONTENT_TYPE, "application/json" );
+        exchange.getResponseSender().send( render() );
+    }
+
+    String render() {
+        final StringBuilder json = new StringBuilder( "{\"caches\":[" );
+        boolean first = true;
+        for ( final Map.Entry<String, Cache> entry : cacheProducer.registeredCaches().entrySet() ) {
+            if ( !first ) json.append( ',' );
+            first = false;
+            render( json, entry.getKey(), entry.getValue() );
+        }
+        return json.append( "]}" ).toString();
+    }
+
+    private void render( StringBuilder json, String name, Cache cache ) {
+        final CacheStats stats = cache.stats();
+        json.append( "{\"name\":\"" ).append( escape( name ) ).append( '"' )
+            .append( ",\"estimated-size\":" ).append( cache.estimatedSize() )
+            .append( ",\"hit-count\":" ).append( stats.hitCount() )
+            .append( ",\"miss-count\":" ).append( stats.missCount() )
+            .append( ",\"hit-rate\":" ).append( stats.hitRate() )
+            .append( ",\"load-success-count\":" ).append( stats.loadSuccessCount() )
+            .append( ",\"load-failure-count\":" ).append( stats.loadFailureCount() )
+            .append( ",\"eviction-count\":" ).append( stats.evictionCount() );
+
+        final CacheMetrics metrics = cacheProducer.metricsOf( name );
+        if ( metrics != null ) {
+            final LatencyHistogram latencies = metrics.loadLatencies;
+            json.append( ",\"load-latency\":{" )
+                .append( "\"count\":" ).append( latencies.count() )
+                .append( ",\"p50\":" ).append( latencies.percentile( 0.5 ) )
+                .append( ",\"p99\":" ).append( latencies.percentile( 0.99 ) )
+                .append( ",\"p999\":" ).append( latencies.percentile( 0.999 ) )
+                .append( ",\"max\":" ).append( latencies.max() )
+                .append( "},\"removals\":{" );
+
+            boolean first = true;
+            for ( final Map.Entry<RemovalCause, Long> removal : metrics.removalsByCause().entrySet() ) {
+                if ( !first ) json.append( ',' );
+                first = false;
+                json.append( '"' ).append( removal.getKey() ).append( "\":" ).append( removal.getValue() );
+            }
+            json.append( '}' );
+        }
+
+        final WriteBehindCacheWriter writeBehind = cacheProducer.writeBehindOf( name );
+        if ( writeBehind != null )
+            json.append( ",\"failed-writes\":" ).append( writeBehind.failedWrites() );
+
+        final HotKeyTracker hotKeys = cacheProducer.hotKeysOf( name );
+        if ( hotKeys != null ) {
+            final boolean exposeKeys = exposesKeysOf( name );
+            json.append( ",\"hot-keys\":[" );
+            boolean first = true;
+            for ( final HotKeyTracker.HotKey hotKey : hotKeys.hotKeys() ) {
+                if ( !first ) json.append( ',' );
+                first = false;
+                json.append( "{\"key-hash\":\"" ).append( hashOf( hotKey.key ) ).append( '"' );
+                if ( exposeKeys )
+                    json.append( ",\"key\":\"" ).append( escape( String.valueOf( hotKey.key ) ) ).append( '"' );
+                json.append( ",\"estimated-reads\":" ).append( hotKey.count ).append( '}' );
+            }
+            json.append( ']' );
+        }
+        json.append( '}' );
+    }
+
+    private boolean exposesKeysOf( String name ) {
+        return !SESSION_CACHES.contains( name )
+            && config.getBoolean( "server.cache." + name + ".hot-keys.expose-keys", false );
+    }
+
+    /**
+     * @return the first 64 bits of the SHA-256 hash of {@code key.toString()}, in hexadecimal
+     */
+    static String hashOf( Object key ) {
+        final byte[] hash;
+        try {
+            hash = MessageDigest.getInstance( "SHA-256" ).digest( String.valueOf( key ).getBytes( StandardCharsets.UTF_8 ) );
+        } catch ( NoSuchAlgorithmException cause ) {
+            throw new IllegalStateException( "Every JVM is required to support SHA-256", cause );
+        }
+
+        final StringBuilder hex = new StringBuilder( 16 );
+        for ( int i = 0; i < 8; i++ )
+            hex.append( Character.forDigit( (hash[i] >> 4) & 0xF, 16 ) ).append( Character.forDigit( hash[i] & 0xF, 16 ) );
+        return hex.toString();
+    }
+
+    /**
+     * @return {@code value} as the content of a JSON string: quotes, backslashes and control characters are escaped
+     */
+    static String escape( String value ) {
+        final StringBuilder escaped = new StringBuilder( value.length() + 8 );
+        for ( int i = 0; i < value.length(); i++ ) {
+            final char c = value.charAt( i );
+            if ( c == '"' || c == '\\' )
+                escaped.append( '\\' ).append( c );
+            else if ( c < 0x20 )
+                escaped.append( String.format( "\\u%04x", (int) c ) );
+            else
+                escaped.append( c );
+        }
+        return escaped.toString();
+    }
+}
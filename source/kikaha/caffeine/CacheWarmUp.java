@@ -0,0 +1,80 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Preloads a cache with the keys supplied by its {@link CacheWarmer}. Keys are split into
+ * batches of {@code batchSize} keys, loaded through {@code getAll}, with at most
+ * {@code parallelism} batches being loaded at the same time.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@SuppressWarnings("unchecked")
+class CacheWarmUp {
+
+    final String name;
+    final int batchSize, parallelism;
+
+    private final AtomicLong loadedKeys = new AtomicLong(), failedKeys = new AtomicLong();
+
+    /**
+     * Warms up {@code cache}, blocking until every batch is loaded.
+     * @return the number of keys loaded
+     */
+    long warmUp( Object cache, CacheWarmer warmer ) throws Exception {
+        final Semaphore permits = new Semaphore( parallelism );
+        final ExecutorService pool = Executors.newFixedThreadPool( parallelism, CacheExecutors.daemonThreadsNamed( name + "-warm-up" ) );
+
+        try ( final Stream<Object> keys = warmer.keysToPreload() ) {
+            final Iterator<Object> iterator = keys.iterator();
+            List<Object> batch = new ArrayList<>( batchSize );
+            while ( iterator.hasNext() ) {
+                batch.add( iterator.next() );
+                if ( batch.size() == batchSize ) {
+                    load( cache, batch, permits, pool );
+                    batch = new ArrayList<>( batchSize );
+                }
+            }
+            if ( !batch.isEmpty() )
+                load( cache, batch, permits, pool );
+
+            // every permit is back once the last batch is done
+            permits.acquire( parallelism );
+        } finally {
+            pool.shutdown();
+        }
+
+        if ( failedKeys.get() > 0 )
+            log.warn( "Could not preload " + failedKeys.get() + " keys into " + name );
+        return loadedKeys.get();
+    }
+
+    private void load( Object cache, List<Object> batch, Semaphore permits, Executor pool ) throws InterruptedException {
+        permits.acquire();
+
+        final CompletableFuture<?> loaded;
+        if ( cache instanceof AsyncLoadingCache )
+            loaded = ((AsyncLoadingCache<Object, Object>) cache).getAll( batch );
+        else
+            loaded = CompletableFuture.runAsync( () -> ((LoadingCache<Object, Object>) cache).getAll( batch ), pool );
+
+        loaded.whenComplete( (ignored, failure) -> {
+            if ( failure != null ) {
+                log.debug( "Could not preload a batch into " + name, failure );
+                failedKeys.addAndGet( batch.size() );
+            } else
+                loadedKeys.addAndGet( batch.size() );
+            permits.release();
+        });
+    }
+}
@@ -0,0 +1,18 @@
+package kikaha.caffeine;
+
+import java.util.stream.Stream;
+
+/**
+ * Supplies the keys a cache should be preloaded with when the application is deployed.
+ * Implementations annotated with {@code @Named} warm up the cache with the same name (a
+ * {@code LoadingCache} or an {@code AsyncLoadingCache}), which loads the keys through
+ * bulk {@code getAll} calls. Keys may come from anywhere: a file of recently hot keys,
+ * a database query or a snapshot written by the application on shutdown.
+ */
+public interface CacheWarmer<K> {
+
+    /**
+     * @return the keys to preload. The stream is closed once the warm up is done.
+     */
+    Stream<K> keysToPreload() throws Exception;
+}
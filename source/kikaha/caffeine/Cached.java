@@ -0,0 +1,22 @@
+package kikaha.caffeine;
+
+import java.lang.annotation.*;
+
+/**
+ * Caches the results of the annotated method on the cache named {@link #value()}, indexed by the
+ * method arguments. Concurrent calls with the same arguments are coalesced into a single invocation.
+ * Methods returning {@link java.util.concurrent.CompletableFuture} are cached on an
+ * {@link com.github.benmanes.caffeine.cache.AsyncLoadingCache}.
+ *
+ * @see CacheProxies
+ */
+@Documented
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.METHOD )
+public @interface Cached {
+
+    /**
+     * @return the name of the cache, as configured under {@code server.cache}
+     */
+    String value();
+}
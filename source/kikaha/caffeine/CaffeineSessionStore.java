@@ -1,31 +1,117 @@
 package kikaha.caffeine;
 
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Policy;
 import io.undertow.server.HttpServerExchange;
+import kikaha.config.Config;
+import kikaha.core.modules.security.DefaultSession;
 import kikaha.core.modules.security.Session;
 import kikaha.core.modules.security.SessionIdManager;
 import kikaha.core.modules.security.SessionStore;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Singleton @Slf4j
 public class CaffeineSessionStore implements SessionStore {
 
-    private final Lock lock = new ReentrantLock();
+    static final String SESSION_CACHE = "session-cache";
+
+    private final SessionCreations sessionCreations = new SessionCreations();
 
     @Inject @Named("session-cache")
     LoadingCache<String, Session> sessionCache;
 
+    @Inject Config config;
+    @Inject CacheProducer cacheProducer;
+    @Inject SessionIndex sessionIndex;
+
+    SessionSnapshot snapshot;
+    SessionFlushMode flushMode = SessionFlushMode.ALWAYS;
+    boolean compactSessions, compressSessions;
+
+    /**
+     * Reads the {@code server.cache.session-cache} settings, chains the {@link SessionIndex} to the removals of the
+     * cache and restores the sessions saved by the last shutdown when {@code server.cache.session-cache.snapshot.enabled} is set.
+     * <p>
+     * Sessions are stored as objects unless {@code server.cache.session-cache.storage} is
+     * {@code serialized} or {@code compressed}, which keeps them as {@link CompactSession}s.
+     */
+    @PostConstruct
+    public void loadConfiguration(){
+        flushMode = SessionFlushMode.from( config.getString( "server.cache.session-cache.flush-mode", "always" ) );
+        final String storage = config.getString( "server.cache.session-cache.storage", "objects" );
+        compressSessions = "compressed".equals( storage );
+        compactSessions = compressSessions || "serialized".equals( storage );
+        cacheProducer.chainRemovalListener( SESSION_CACHE, sessionIndex );
+        restoreSnapshot();
+    }
+
+    void restoreSnapshot(){
+        if ( !config.getBoolean( "server.cache.session-cache.snapshot.enabled", false ) )
+            return;
+
+        snapshot = new SessionSnapshot( Paths.get(
+            config.getString( "server.cache.session-cache.snapshot.file", "session-cache.snapshot" ) ) );
+        try {
+            final int restored = restore( snapshot.readRecords() );
+            log.info( "Restored " + restored + " sessions from " + snapshot.file );
+        } catch ( IOException cause ) {
+            log.error( "Could not restore sessions from " + snapshot.file, cause );
+        }
+
+        Runtime.getRuntime().addShutdownHook( new Thread( this::saveSnapshot, "session-cache-snapshot" ) );
+    }
+
+    /**
+     * Stores the sessions read from a snapshot as if they were loaded, thus without reaching the
+     * {@code CacheWriter} of the cache, and compacted as configured. Sessions that expired meanwhile
+     * are dropped. When the cache expires its entries variably, the others keep the time they had
+     * left; otherwise, their {@code expiration} starts over.
+     *
+     * @return the number of restored sessions
+     */
+    int restore( List<SessionSnapshot.Record> records ){
+        final Optional<Policy.VarExpiration<String, Session>> expiration = sessionCache.policy().expireVariably();
+        final long now = System.currentTimeMillis();
+        int restored = 0;
+        for ( final SessionSnapshot.Record record : records ) {
+            final long remaining = record.remainingTimeToLive( now );
+            final Session stored = compact( record.session );
+            if ( remaining <= 0 || sessionCache.get( record.id, id -> stored ) != stored )
+                continue;
+
+            sessionIndex.index( record.id, record.session, stored );
+            if ( remaining != SessionSnapshot.NEVER_EXPIRES && expiration.isPresent() )
+                expiration.get().setExpiresAfter( record.id, remaining, TimeUnit.MILLISECONDS );
+            restored++;
+        }
+        return restored;
+    }
+
+    void saveSnapshot(){
+        try {
+            final int saved = snapshot.write( sessionCache );
+            log.info( "Saved " + saved + " sessions into " + snapshot.file );
+        } catch ( IOException cause ) {
+            log.error( "Could not save sessions into " + snapshot.file, cause );
+        }
+    }
+
     @Override
     public Session createOrRetrieveSession( HttpServerExchange exchange, SessionIdManager sessionIdManager ) {
         final String sessionId = sessionIdManager.retrieveSessionIdFrom(exchange);
 
-        Session session = sessionCache.get( sessionId );
+        Session session = inflate( sessionCache.get( sessionId ) );
         if ( session == null )
             session = tryToCreateAndStoreNewSession(sessionId, exchange, sessionIdManager);
 
@@ -34,39 +120,80 @@ public class CaffeineSessionStore implements SessionStore {
 
     @Override
     public Session tryToCreateAndStoreNewSession(String sessionId, HttpServerExchange exchange, SessionIdManager sessionIdManager) {
-        Session session;
+        return sessionCreations.createOnce( sessionId, () -> {
+            final Session stored = inflate( sessionCache.get( sessionId ) );
+            if ( stored != null )
+                return stored;
 
-        lock.lock();
-        try {
-            session = sessionCache.get(sessionId);
-            if ( session == null ) {
-                session = createAndStoreNewSession(sessionId, exchange, sessionIdManager);
-                System.out.println( Thread.currentThread().getName() + ": Session created: " + sessionId );
-            }
-        } finally {
-            lock.unlock();
-        }
+            log.debug( "Session created: " + sessionId );
+            return createAndStoreNewSession( sessionId, exchange, sessionIdManager );
+        });
+    }
 
+    /**
+     * Creates a {@link TrackedSession}, so {@link #flush(Session)} can tell whether it was modified.
+     */
+    @Override
+    public Session createAndStoreNewSession( String sessionId, HttpServerExchange exchange, SessionIdManager sessionIdManager ) {
+        final Session session = new TrackedSession( new DefaultSession( sessionId ) );
+        storeSession( sessionId, session );
+        sessionIdManager.attachSessionId( exchange, sessionId );
         return session;
     }
 
     @Override
     public void invalidateSession( Session session ) {
         sessionCache.invalidate( session.getId() );
+        sessionIndex.remove( session.getId() );
+    }
+
+    /**
+     * Invalidates every session authenticated as {@code principal}, e.g. to log a user out everywhere.
+     *
+     * @return the number of invalidated sessions
+     */
+    public int invalidateSessionsOf( String principal ) {
+        final Set<String> sessionIds = sessionIndex.sessionIdsOf( principal );
+        sessionCache.invalidateAll( sessionIds );
+        sessionIds.forEach( sessionIndex::remove );
+        return sessionIds.size();
+    }
+
+    /**
+     * @return the number of sessions authenticated as {@code principal}
+     */
+    public int countSessionsOf( String principal ) {
+        return sessionIndex.countSessionsOf( principal );
     }
 
     @Override
     public void flush( Session currentSession ) {
-        storeSession( currentSession.getId(), currentSession );
+        if ( flushMode.shouldStore( currentSession ) )
+            storeSession( currentSession.getId(), currentSession );
+        else if ( flushMode == SessionFlushMode.TOUCH )
+            sessionCache.getIfPresent( currentSession.getId() );
     }
 
     @Override
     public Session getSessionFromCache( String sessionId ) {
-        return sessionCache.getIfPresent( sessionId );
+        return inflate( sessionCache.getIfPresent( sessionId ) );
     }
 
     @Override
     public void storeSession( String sessionId, Session session ) {
-        sessionCache.put( sessionId, session );
+        final Session stored = compact( session );
+        sessionIndex.index( sessionId, session, stored );
+        sessionCache.put( sessionId, stored );
+    }
+
+    private Session compact( Session session ) {
+        if ( !compactSessions || session instanceof CompactSession )
+            return session;
+        final CompactSession compacted = CompactSession.of( session, compressSessions );
+        return compacted != null ? compacted : session;
+    }
+
+    private static Session inflate( Session session ) {
+        return session instanceof CompactSession ? ((CompactSession) session).inflate() : session;
     }
 }
@@ -0,0 +1,76 @@
+package kikaha.caffeine;
+
+import kikaha.core.modules.security.Session;
+import lombok.experimental.Delegate;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A {@link Session} kept as a serialized (and optionally compressed) byte array, trading
+ * CPU for a much smaller heap footprint than the session object graph. The session store
+ * {@link #inflate() inflates} it back when the session is accessed, and the inflated session
+ * is used through the whole request. Calling its methods directly also works, but each call
+ * deserializes the session again.
+ */
+@Slf4j
+class CompactSession implements Session {
+
+    final String id, principal;
+    final byte[] bytes;
+    final boolean compressed, authenticated;
+
+    private CompactSession( String id, byte[] bytes, boolean compressed, boolean authenticated, String principal ) {
+        this.id = id;
+        this.bytes = bytes;
+        this.compressed = compressed;
+        this.authenticated = authenticated;
+        this.principal = principal;
+    }
+
+    /**
+     * @return the compact version of {@code session}, or {@code null} if it cannot be serialized
+     */
+    static CompactSession of( Session session, boolean compress ) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream( 256 );
+        final Deflater deflater = compress ? new Deflater( Deflater.BEST_SPEED ) : null;
+        try ( final ObjectOutputStream output = new ObjectOutputStream(
+                compress ? new DeflaterOutputStream( buffer, deflater ) : buffer ) ) {
+            output.writeObject( session );
+        } catch ( IOException cause ) {
+            log.debug( "Could not serialize session " + session.getId() + ". Keeping it as is...", cause );
+            return null;
+        } finally {
+            if ( deflater != null )
+                deflater.end();
+        }
+        return new CompactSession( session.getId(), buffer.toByteArray(), compress,
+                session.getAuthenticatedAccount() != null, SessionIndex.principalOf( session ) );
+    }
+
+    /**
+     * @return a new copy of the stored session
+     */
+    @Delegate(excludes = Identity.class)
+    Session inflate() {
+        final InputStream source = new ByteArrayInputStream( bytes );
+        try ( final ObjectInputStream input = new ObjectInputStream(
+                compressed ? new InflaterInputStream( source ) : source ) ) {
+            return (Session) input.readObject();
+        } catch ( IOException | ClassNotFoundException cause ) {
+            throw new IllegalStateException( "Could not deserialize session " + id, cause );
+        }
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    private interface Identity {
+        String getId();
+    }
+}
@@ -0,0 +1,101 @@
+package kikaha.caffeine;
+
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * A reference {@link SecondLevelStore} keeping each entry, serialized, in its own file of a
+ * directory that every node can reach. Files are named after the SHA-256 digest of their serialized
+ * keys, and keep the key itself so a lookup never returns, nor removes, the entry of another key.
+ * Meant for tests and small deployments.
+ */
+public class FileSecondLevelStore<K, V> implements SecondLevelStore<K, V> {
+
+    final Path directory;
+
+    public FileSecondLevelStore( Path directory ) throws IOException {
+        this.directory = Files.createDirectories( directory );
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get( K key ) throws IOException, ClassNotFoundException {
+        try ( final ObjectInputStream input = openEntryOf( key, fileOf( key ) ) ) {
+            return input != null ? (V) input.readObject() : null;
+        }
+    }
+
+    @Override
+    public void put( K key, V value ) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream( 256 );
+        try ( final ObjectOutputStream output = new ObjectOutputStream( buffer ) ) {
+            output.writeObject( key );
+            output.writeObject( value );
+        }
+
+        final Path file = fileOf( key );
+        final Path tmp = Files.createTempFile( directory, file.getFileName().toString(), ".tmp" );
+        try {
+            Files.write( tmp, buffer.toByteArray() );
+            Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } finally {
+            Files.deleteIfExists( tmp );
+        }
+    }
+
+    @Override
+    public void remove( K key ) throws IOException, ClassNotFoundException {
+        final Path file = fileOf( key );
+        final boolean found;
+        try ( final ObjectInputStream input = openEntryOf( key, file ) ) {
+            found = input != null;
+        }
+        if ( found )
+            Files.deleteIfExists( file );
+    }
+
+    /**
+     * @return the entry stored in {@code file}, positioned at its value, or {@code null} if the file does not hold {@code key}
+     */
+    private ObjectInputStream openEntryOf( K key, Path file ) throws IOException, ClassNotFoundException {
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes( file );
+        } catch ( NoSuchFileException cause ) {
+            return null;
+        }
+
+        final ObjectInputStream input = new ObjectInputStream( new ByteArrayInputStream( bytes ) );
+        if ( Objects.equals( key, input.readObject() ) )
+            return input;
+        input.close();
+        return null;
+    }
+
+    private Path fileOf( K key ) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream( 64 );
+        try ( final ObjectOutputStream output = new ObjectOutputStream( buffer ) ) {
+            output.writeObject( key );
+        }
+
+        final StringBuilder name = new StringBuilder( 72 );
+        for ( final byte b : sha256( buffer.toByteArray() ) )
+            name.append( Character.forDigit( (b >> 4) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+        return directory.resolve( name.append( ".entry" ).toString() );
+    }
+
+    private static byte[] sha256( byte[] bytes ) {
+        try {
+            return MessageDigest.getInstance( "SHA-256" ).digest( bytes );
+        } catch ( NoSuchAlgorithmException cause ) {
+            throw new IllegalStateException( "Every JVM is required to support SHA-256", cause );
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Weigher;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Approximately tracks the most read keys of a cache. Readers only sample one of every
+ * {@code sampleEvery} reads into a lock-free ring buffer; a background thread counts the samples
+ * on a count-min sketch and keeps the {@code top} keys with the highest estimates on a heap.
+ * Counts are halved periodically, so keys that cool down leave the top.
+ * <p>
+ * When pinning, the hot keys weigh zero and thus are not evicted by size. Caffeine only weighs an
+ * entry when it is written, so entries whose keys join or leave the top are written again with
+ * their current value. Such writes skip the {@code CacheWriter} wrapped by {@link #skippingReweighs(CacheWriter)},
+ * but still restart their {@code time-after-write} expiration.
+ */
+@Slf4j
+class HotKeyTracker implements AccessRecorder, AutoCloseable {
+
+    static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor( CacheExecutors.daemonThreadsNamed( "hot-keys" ) );
+    static final long DRAIN_INTERVAL_IN_MILLIS = 100;
+
+    final int top, sampleEvery;
+    final boolean pinHotKeys;
+    final Set<Object> pinned = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Boolean> reweighing = new ThreadLocal<>();
+
+    private final int sampleMask;
+    private final AtomicReferenceArray<Object> samples;
+    private final int samplesMask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final CountMinSketch sketch;
+    private final Map<Object, HotKey> hottest = new HashMap<>();
+    private final PriorityQueue<HotKey> heap = new PriorityQueue<>( Comparator.comparingLong( (HotKey k) -> k.count ) );
+    private volatile List<HotKey> snapshot = Collections.emptyList();
+    private final ScheduledFuture<?> drainer;
+    private volatile Cache<Object, Object> cache;
+
+    HotKeyTracker( int top, int sampleEvery, boolean pinHotKeys ) {
+        this.top = top;
+        this.sampleEvery = Integer.highestOneBit( Math.max( 1, sampleEvery ) );
+        this.sampleMask = this.sampleEvery - 1;
+        this.pinHotKeys = pinHotKeys;
+        this.samples = new AtomicReferenceArray<>( 1 << 12 );
+        this.samplesMask = samples.length() - 1;
+        this.sketch = new CountMinSketch( Math.max( 1 << 10, Integer.highestOneBit( top * 256 ) ) );
+        this.drainer = SCHEDULER.scheduleWithFixedDelay( this::drainSafely,
+                DRAIN_INTERVAL_IN_MILLIS, DRAIN_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Lets the tracker store the entries of {@code cache} again when their keys are pinned or unpinned.
+     */
+    void attach( Cache cache ) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return {@code weigher}, except for pinned keys, which weigh zero
+     */
+    Weigher<Object, Object> excludingPinnedKeys( Weigher<Object, Object> weigher ) {
+        return (key, value) -> pinned.contains( key ) ? 0 : weigher.weigh( key, value );
+    }
+
+    /**
+     * @return {@code writer}, except for the writes made only to weigh pinned or unpinned entries again
+     */
+    CacheWriter<Object, Object> skippingReweighs( CacheWriter<Object, Object> writer ) {
+        return new CacheWriter<Object, Object>() {
+            @Override
+            public void write( Object key, Object value ) {
+                if ( reweighing.get() == null )
+                    writer.write( key, value );
+            }
+
+            @Override
+            public void delete( Object key, Object value, RemovalCause cause ) {
+                writer.delete( key, value, cause );
+            }
+        };
+    }
+
+    @Override
+    public void record( AccessTrace.Event event, Object key ) {
+        if ( event != AccessTrace.Event.READ || key == null
+        ||   ( ThreadLocalRandom.current().nextInt() & sampleMask ) != 0 )
+            return;
+
+        long claimed;
+        do {
+            claimed = tail.get();
+            if ( claimed - head > samplesMask )
+                return;
+        } while ( !tail.compareAndSet( claimed, claimed + 1 ) );
+        samples.lazySet( (int) ( claimed & samplesMask ), key );
+    }
+
+    /**
+     * @return the hottest keys, from the hottest, with their estimated number of reads
+     */
+    List<HotKey> hotKeys() {
+        return snapshot;
+    }
+
+    private void drainSafely() {
+        try {
+            drain();
+        } catch ( RuntimeException cause ) {
+            log.error( "Could not update the hot keys", cause );
+        }
+    }
+
+    synchronized void drain() {
+        long position = head;
+        while ( true ) {
+            final int index = (int) ( position & samplesMask );
+            final Object key = samples.get( index );
+            if ( key == null )
+                break;
+            samples.lazySet( index, null );
+            head = ++position;
+            count( key );
+        }
+
+        final List<HotKey> sorted = new ArrayList<>( heap.size() );
+        for ( final HotKey hotKey : heap )
+            sorted.add( new HotKey( hotKey.key, hotKey.count * sampleEvery ) );
+        sorted.sort( Comparator.comparingLong( (HotKey k) -> k.count ).reversed() );
+        snapshot = Collections.unmodifiableList( sorted );
+
+        if ( pinHotKeys )
+            updatePinnedKeys();
+    }
+
+    private void count( Object key ) {
+        final long estimate = sketch.incrementAndEstimate( key );
+        if ( sketch.shouldAge() ) {
+            sketch.age();
+            for ( final HotKey hotKey : heap )
+                hotKey.count >>>= 1;
+        }
+
+        final HotKey known = hottest.get( key );
+        if ( known != null ) {
+            heap.remove( known );
+            known.count = estimate;
+            heap.add( known );
+        } else if ( heap.size() < top ) {
+            add( key, estimate );
+        } else if ( estimate > heap.peek().count ) {
+            hottest.remove( heap.poll().key );
+            add( key, estimate );
+        }
+    }
+
+    private void add( Object key, long estimate ) {
+        final HotKey hotKey = new HotKey( key, estimate );
+        hottest.put( key, hotKey );
+        heap.add( hotKey );
+    }
+
+    private void updatePinnedKeys() {
+        for ( final Object key : new ArrayList<>( pinned ) )
+            if ( !hottest.containsKey( key ) ) {
+                pinned.remove( key );
+                weighAgain( key );
+            }
+        for ( final Object key : hottest.keySet() )
+            if ( pinned.add( key ) )
+                weighAgain( key );
+    }
+
+    private void weighAgain( Object key ) {
+        final Cache<Object, Object> cache = this.cache;
+        if ( cache == null )
+            return;
+        reweighing.set( Boolean.TRUE );
+        try {
+            cache.asMap().computeIfPresent( key, (k, value) -> value );
+        } finally {
+            reweighing.remove();
+        }
+    }
+
+    @Override
+    public void close() {
+        drainer.cancel( false );
+    }
+
+    static class HotKey {
+        final Object key;
+        long count;
+
+        HotKey( Object key, long count ) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+
+    /**
+     * A count-min sketch with four rows of {@code width} counters.
+     */
+    static class CountMinSketch {
+
+        static final int[] SEEDS = { 0x97cb3127, 0xa2ec8a77, 0x5c52c1f9, 0x3a9d4f1b };
+
+        final int[][] counters;
+        final int mask;
+        final long sampleSize;
+        long increments;
+
+        CountMinSketch( int width ) {
+            counters = new int[ SEEDS.length ][ width ];
+            mask = width - 1;
+            sampleSize = 10L * width;
+        }
+
+        long incrementAndEstimate( Object key ) {
+            final int hash = AccessTrace.hashOf( key );
+            int estimate = Integer.MAX_VALUE;
+            for ( int row = 0; row < SEEDS.length; row++ ) {
+                final int index = indexOf( hash, row );
+                if ( counters[row][index] < Integer.MAX_VALUE )
+                    counters[row][index]++;
+                estimate = Math.min( estimate, counters[row][index] );
+            }
+            increments++;
+            return estimate;
+        }
+
+        boolean shouldAge() {
+            return increments >= sampleSize;
+        }
+
+        void age() {
+            for ( final int[] row : counters )
+                for ( int i = 0; i < row.length; i++ )
+                    row[i] >>>= 1;
+            increments /= 2;
+        }
+
+        private int indexOf( int hash, int row ) {
+            final int mixed = hash * SEEDS[row];
+            return ( mixed ^ ( mixed >>> 15 ) ) & mask;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package kikaha.caffeine;
+
+import java.util.function.Consumer;
+
+/**
+ * Tells the other nodes which keys of a near-cache were changed, so they drop their local
+ * copies. Implementations annotated with {@code @Named} are used by the near-cache with the
+ * same name. Caches without one use a {@link LoopbackInvalidationChannel}.
+ */
+public interface InvalidationChannel {
+
+    /**
+     * Notifies every other node that {@code key} of the cache {@code cacheName} has changed.
+     */
+    void publish( String cacheName, Object key );
+
+    /**
+     * Calls {@code listener} whenever another node changes a key of the cache {@code cacheName}.
+     */
+    void subscribe( String cacheName, Consumer<Object> listener );
+}
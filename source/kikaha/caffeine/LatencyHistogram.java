@@ -0,0 +1,76 @@
+package kikaha.caffeine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, log-linear histogram of non-negative values (typically nanoseconds). Each
+ * power of two is split into eight buckets, so percentiles are reported with at most 12.5%
+ * of error, while the histogram keeps a fixed footprint of 4KB.
+ */
+class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 3, SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray( 64 * SUB_BUCKETS );
+    private final AtomicLong max = new AtomicLong();
+
+    void record( long value ) {
+        if ( value < 0 )
+            value = 0;
+        buckets.incrementAndGet( indexOf( value ) );
+
+        long current;
+        while ( value > ( current = max.get() ) && !max.compareAndSet( current, value ) );
+    }
+
+    long count() {
+        long count = 0;
+        for ( int i = 0; i < buckets.length(); i++ )
+            count += buckets.get( i );
+        return count;
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile a value between 0 and 1 (e.g. 0.99 for the 99th percentile)
+     * @return the upper bound of the bucket holding the given quantile, or 0 when nothing was recorded
+     */
+    long percentile( double quantile ) {
+        final long[] snapshot = new long[ buckets.length() ];
+        long total = 0;
+        for ( int i = 0; i < snapshot.length; i++ )
+            total += snapshot[i] = buckets.get( i );
+        if ( total == 0 )
+            return 0;
+
+        final long rank = Math.max( 1, (long) Math.ceil( quantile * total ) );
+        long accumulated = 0;
+        for ( int i = 0; i < snapshot.length; i++ ) {
+            accumulated += snapshot[i];
+            if ( accumulated >= rank )
+                return Math.min( upperBoundOf( i ), max() );
+        }
+        return max();
+    }
+
+    static int indexOf( long value ) {
+        if ( value < SUB_BUCKETS )
+            return (int) value;
+        final int magnitude = 63 - Long.numberOfLeadingZeros( value );
+        final int subBucket = (int) ( ( value >>> ( magnitude - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 ) );
+        return ( magnitude - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf( int index ) {
+        final int row = index / SUB_BUCKETS, subBucket = index % SUB_BUCKETS;
+        if ( row == 0 )
+            return subBucket;
+        final int magnitude = row + SUB_BUCKET_BITS - 1, shift = magnitude - SUB_BUCKET_BITS;
+        final long lowerBound = ( 1L << magnitude ) | ( (long) subBucket << shift );
+        return lowerBound + ( 1L << shift ) - 1;
+    }
+}
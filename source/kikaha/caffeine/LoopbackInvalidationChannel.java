@@ -0,0 +1,63 @@
+package kikaha.caffeine;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * An {@link InvalidationChannel} that delivers invalidations, synchronously, to the other
+ * channels of the same {@link Bus} inside this JVM. Each channel stands for a node, thus it
+ * does not receive the invalidations it publishes. Useful to run several nodes in tests, or
+ * as a stand-in until a channel over the network is plugged in.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class LoopbackInvalidationChannel implements InvalidationChannel {
+
+    final Bus bus;
+
+    public LoopbackInvalidationChannel() {
+        this( Bus.SHARED );
+    }
+
+    @Override
+    public void publish( String cacheName, Object key ) {
+        for ( final Subscription subscription : bus.subscriptionsOf( cacheName ) )
+            if ( subscription.channel != this )
+                try {
+                    subscription.listener.accept( key );
+                } catch ( RuntimeException cause ) {
+                    log.error( "Could not invalidate " + key + " of " + cacheName, cause );
+                }
+    }
+
+    @Override
+    public void subscribe( String cacheName, Consumer<Object> listener ) {
+        bus.subscriptionsOf( cacheName ).add( new Subscription( this, listener ) );
+    }
+
+    /**
+     * The channels that can reach each other.
+     */
+    public static class Bus {
+
+        static final Bus SHARED = new Bus();
+
+        private final ConcurrentMap<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+        List<Subscription> subscriptionsOf( String cacheName ) {
+            return subscriptions.computeIfAbsent( cacheName, n -> new CopyOnWriteArrayList<>() );
+        }
+    }
+
+    @RequiredArgsConstructor
+    static class Subscription {
+        final LoopbackInvalidationChannel channel;
+        final Consumer<Object> listener;
+    }
+}
@@ -0,0 +1,203 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * A {@link Weigher} that estimates, in bytes, the memory retained by each entry, assuming a
+ * 64-bit JVM with compressed references. The object graph of keys and values is walked
+ * (e.g. a {@code Session} and its attributes): JDK collections, maps, strings, boxed
+ * primitives and arrays are sized directly, while other objects are sized by their fields.
+ * Enums and classes are considered shared and are not accounted for, and objects reachable
+ * through several paths are counted once. The walk stops {@link #MAX_DEPTH} references away
+ * from the entry or after {@link #MAX_VISITED_OBJECTS} objects. Collections modified while
+ * being walked are sized without their elements.
+ * <p>
+ * It weighs every entry written, thus is only used by caches configured with {@code maximum-weight}
+ * and {@code weigher: memory-estimating}, bounding them by bytes instead of by number of entries.
+ */
+public class MemoryEstimatingWeigher implements Weigher<Object, Object> {
+
+    static final int OBJECT_HEADER = 12, ARRAY_HEADER = 16, REFERENCE = 4,
+                     COLLECTION_ELEMENT_OVERHEAD = 16, MAP_ENTRY_OVERHEAD = 36,
+                     MAX_VISITED_OBJECTS = 100_000, MAX_DEPTH = 32;
+
+    private static final ClassValue<Layout> layouts = new ClassValue<Layout>() {
+        @Override
+        protected Layout computeValue( Class<?> type ) {
+            return Layout.of( type );
+        }
+    };
+
+    @Override
+    public int weigh( Object key, Object value ) {
+        return (int) Math.min( Integer.MAX_VALUE, estimate( key ) + estimate( value ) );
+    }
+
+    /**
+     * @return the estimated number of bytes retained by {@code root}
+     */
+    public long estimate( Object root ) {
+        final Set<Object> visited = Collections.newSetFromMap( new IdentityHashMap<>() );
+        final Walk walk = new Walk();
+        walk.push( root, 0 );
+
+        long total = 0;
+        while ( !walk.isEmpty() && visited.size() < MAX_VISITED_OBJECTS ) {
+            final int depth = walk.depth();
+            final Object obj = walk.pop();
+            if ( obj == null || obj instanceof Enum || obj instanceof Class || !visited.add( obj ) )
+                continue;
+            walk.next = depth < MAX_DEPTH ? depth + 1 : -1;
+            total += sizeOf( obj, walk );
+        }
+        return total;
+    }
+
+    private static long sizeOf( Object obj, Walk walk ) {
+        if ( obj instanceof String )
+            return align( OBJECT_HEADER + 12 ) + align( ARRAY_HEADER + ((String) obj).length() );
+
+        final Class<?> type = obj.getClass();
+        if ( type.isArray() )
+            return sizeOfArray( obj, type.getComponentType(), walk );
+
+        final Layout layout = layouts.get( type );
+        if ( obj instanceof Collection && layout.isJdkType ) {
+            final Collection<?> collection = (Collection<?>) obj;
+            try {
+                collection.forEach( walk::push );
+            } catch ( ConcurrentModificationException cause ) {
+                // modified meanwhile: its remaining elements will not be accounted for
+            }
+            return layout.shallowSize + (long) collection.size() * COLLECTION_ELEMENT_OVERHEAD;
+        }
+        if ( obj instanceof Map && layout.isJdkType ) {
+            final Map<?, ?> map = (Map<?, ?>) obj;
+            try {
+                map.forEach( (k, v) -> { walk.push( k ); walk.push( v ); } );
+            } catch ( ConcurrentModificationException cause ) {
+                // modified meanwhile: its remaining entries will not be accounted for
+            }
+            return layout.shallowSize + (long) map.size() * MAP_ENTRY_OVERHEAD;
+        }
+
+        for ( final Field field : layout.references )
+            try {
+                walk.push( field.get( obj ) );
+            } catch ( IllegalAccessException | RuntimeException cause ) {
+                // not reachable: the field will not be accounted for
+            }
+        return layout.shallowSize;
+    }
+
+    private static long sizeOfArray( Object array, Class<?> componentType, Walk walk ) {
+        final int length = Array.getLength( array );
+        if ( componentType.isPrimitive() )
+            return align( ARRAY_HEADER + (long) length * sizeOfPrimitive( componentType ) );
+
+        for ( final Object element : (Object[]) array )
+            walk.push( element );
+        return align( ARRAY_HEADER + (long) length * REFERENCE );
+    }
+
+    static int sizeOfPrimitive( Class<?> type ) {
+        if ( type == long.class || type == double.class ) return 8;
+        if ( type == int.class || type == float.class ) return 4;
+        if ( type == short.class || type == char.class ) return 2;
+        return 1;
+    }
+
+    static long align( long size ) {
+        return ( size + 7 ) & ~7;
+    }
+
+    /**
+     * The objects still to be sized, along with how many references away from the entry they are.
+     * Objects found past {@link #MAX_DEPTH}, or once {@link #MAX_VISITED_OBJECTS} are pending, are not pushed.
+     */
+    static class Walk {
+
+        Object[] objects = new Object[ 64 ];
+        int[] depths = new int[ 64 ];
+        int size, next;
+
+        void push( Object obj ) {
+            if ( obj != null && next >= 0 && size < MAX_VISITED_OBJECTS )
+                push( obj, next );
+        }
+
+        void push( Object obj, int depth ) {
+            if ( size == objects.length ) {
+                objects = Arrays.copyOf( objects, size * 2 );
+                depths = Arrays.copyOf( depths, size * 2 );
+            }
+            objects[ size ] = obj;
+            depths[ size++ ] = depth;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int depth() {
+            return depths[ size - 1 ];
+        }
+
+        Object pop() {
+            final Object obj = objects[ --size ];
+            objects[ size ] = null;
+            return obj;
+        }
+    }
+
+    /**
+     * The shallow size of a class and the reference fields that should be followed.
+     */
+    static class Layout {
+
+        final long shallowSize;
+        final List<Field> references;
+        final boolean isJdkType;
+
+        Layout( long shallowSize, List<Field> references, boolean isJdkType ) {
+            this.shallowSize = shallowSize;
+            this.references = references;
+            this.isJdkType = isJdkType;
+        }
+
+        static Layout of( Class<?> type ) {
+            final boolean isJdkType = type.getName().startsWith( "java." );
+            final List<Field> references = new ArrayList<>();
+            long size = OBJECT_HEADER;
+
+            for ( Class<?> current = type; current != null; current = current.getSuperclass() )
+                for ( final Field field : current.getDeclaredFields() ) {
+                    if ( Modifier.isStatic( field.getModifiers() ) )
+                        continue;
+                    if ( field.getType().isPrimitive() ) {
+                        size += sizeOfPrimitive( field.getType() );
+                        continue;
+                    }
+                    size += REFERENCE;
+                    if ( !isJdkType && makeAccessible( field ) )
+                        references.add( field );
+                }
+
+            return new Layout( align( size ), references, isJdkType );
+        }
+
+        private static boolean makeAccessible( Field field ) {
+            try {
+                field.setAccessible( true );
+                return true;
+            } catch ( RuntimeException cause ) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.*;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.experimental.Delegate;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Turns a cache into the first level (L1) of a near-cache in front of a {@link SecondLevelStore} (L2).
+ * L1 hits never leave the local memory. Misses are read from L2 before hitting the cache loader,
+ * whose values are then stored in L2. Writes and explicit removals go to both levels and are
+ * published through the {@link InvalidationChannel}, so other nodes drop their stale copies.
+ * <p>
+ * {@link AsyncLoadingCache}s cannot have a {@link CacheWriter}: their writes are shared by
+ * {@link #sharingWrites(AsyncLoadingCache)} and their explicit removals by {@link #removalListener()}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@SuppressWarnings("unchecked")
+class NearCache {
+
+    final String name;
+    final SecondLevelStore store;
+    final InvalidationChannel channel;
+
+    private final ThreadLocal<Boolean> invalidatingLocalCopy = new ThreadLocal<>();
+    private final Map<Object, Boolean> invalidatedRemotely = new ConcurrentHashMap<>();
+
+    /**
+     * Drops the copies {@code cache} holds of keys changed by other nodes.
+     */
+    void listen( Cache cache ) {
+        channel.subscribe( name, key -> {
+            invalidatingLocalCopy.set( Boolean.TRUE );
+            try {
+                cache.invalidate( key );
+            } finally {
+                invalidatingLocalCopy.remove();
+            }
+        });
+    }
+
+    /**
+     * Drops the copies {@code cache} holds of keys changed by other nodes. As its removal listener
+     * runs on another thread, keys are flagged before being removed so the listener leaves them alone.
+     */
+    void listen( AsyncLoadingCache cache ) {
+        channel.subscribe( name, key ->
+            cache.synchronous().asMap().computeIfPresent( key, (k, value) -> {
+                invalidatedRemotely.put( k, Boolean.TRUE );
+                return null;
+            })
+        );
+    }
+
+    /**
+     * Removes from L2, and from other nodes, the entries explicitly removed from an {@link AsyncLoadingCache}.
+     */
+    RemovalListener<Object, Object> removalListener() {
+        return (key, value, cause) -> {
+            if ( invalidatedRemotely.remove( key ) == null && cause == RemovalCause.EXPLICIT )
+                unshare( key );
+        };
+    }
+
+    /**
+     * @return {@code cache}, storing in L2 and publishing the values written through its {@code put} method.
+     *         Writes made through its {@code synchronous()} view are not shared.
+     */
+    AsyncLoadingCache sharingWrites( AsyncLoadingCache cache ) {
+        return new SharingWrites<>( cache );
+    }
+
+    CacheWriter writer( CacheWriter writer ) {
+        return new CacheWriter<Object, Object>() {
+            @Override @SneakyThrows
+            public void write( Object key, Object value ) {
+                store.put( key, value );
+                channel.publish( name, key );
+                if ( writer != null ) writer.write( key, value );
+            }
+
+            @Override @SneakyThrows
+            public void delete( Object key, Object value, RemovalCause cause ) {
+                if ( invalidatingLocalCopy.get() != null )
+                    return;
+                if ( cause == RemovalCause.EXPLICIT ) {
+                    store.remove( key );
+                    channel.publish( name, key );
+                }
+                if ( writer != null ) writer.delete( key, value, cause );
+            }
+        };
+    }
+
+    CacheLoader loader( CacheLoader loader ) {
+        return new CacheLoader<Object, Object>() {
+            @Override
+            public Object load( Object key ) throws Exception {
+                final Object stored = store.get( key );
+                return stored != null ? stored : share( key, loader.load( key ) );
+            }
+
+            @Override
+            public Map<Object, Object> loadAll( Iterable<?> keys ) throws Exception {
+                final Map<Object, Object> found = new HashMap<>();
+                final List<Object> missingKeys = new ArrayList<>();
+                for ( final Object key : keys ) {
+                    final Object stored = store.get( key );
+                    if ( stored != null )
+                        found.put( key, stored );
+                    else
+                        missingKeys.add( key );
+                }
+                if ( missingKeys.isEmpty() )
+                    return found;
+
+                Map<Object, Object> loaded;
+                try {
+                    loaded = loader.loadAll( missingKeys );
+                } catch ( UnsupportedOperationException cause ) {
+                    loaded = new HashMap<>();
+                    for ( final Object key : missingKeys ) {
+                        final Object value = loader.load( key );
+                        if ( value != null )
+                            loaded.put( key, value );
+                    }
+                }
+
+                for ( final Map.Entry<Object, Object> entry : loaded.entrySet() )
+                    found.put( entry.getKey(), share( entry.getKey(), entry.getValue() ) );
+                return found;
+            }
+
+            @Override
+            public CompletableFuture<Object> asyncReload( Object key, Object oldValue, Executor executor ) {
+                return loader.asyncReload( key, oldValue, executor ).thenApply( value -> share( key, value ) );
+            }
+        };
+    }
+
+    AsyncCacheLoader asyncLoader( AsyncCacheLoader loader ) {
+        return new AsyncCacheLoader<Object, Object>() {
+            @Override
+            public CompletableFuture<Object> asyncLoad( Object key, Executor executor ) {
+                return CompletableFuture.supplyAsync( () -> read( key ), executor ).thenCompose( stored ->
+                    stored != null ? completedFuture( stored )
+                                   : loader.asyncLoad( key, executor ).thenApply( value -> share( key, value ) ) );
+            }
+
+            @Override
+            public CompletableFuture<Object> asyncReload( Object key, Object oldValue, Executor executor ) {
+                return loader.asyncReload( key, oldValue, executor ).thenApply( value -> share( key, value ) );
+            }
+        };
+    }
+
+    @SneakyThrows
+    private Object read( Object key ) {
+        return store.get( key );
+    }
+
+    @SneakyThrows
+    private void unshare( Object key ) {
+        store.remove( key );
+        channel.publish( name, key );
+    }
+
+    /**
+     * Stores in L2 the values loaded from the source.
+     */
+    @SneakyThrows
+    private Object share( Object key, Object value ) {
+        if ( value != null )
+            store.put( key, value );
+        return value;
+    }
+
+    @RequiredArgsConstructor
+    private class SharingWrites<K, V> implements AsyncLoadingCache<K, V> {
+
+        @Delegate(excludes = Shared.class)
+        final AsyncLoadingCache<K, V> cache;
+
+        @Override
+        public void put( K key, CompletableFuture<V> valueFuture ) {
+            cache.put( key, valueFuture );
+            valueFuture.thenAccept( value -> {
+                if ( value != null )
+                    try {
+                        share( key, value );
+                        channel.publish( name, key );
+                    } catch ( Exception cause ) {
+                        log.error( "Could not share " + key + " with the second level of " + name, cause );
+                    }
+            });
+        }
+    }
+
+    private interface Shared {
+        void put( Object key, CompletableFuture valueFuture );
+    }
+}
@@ -0,0 +1,125 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.*;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Remembers, for a while, the keys its loaders could not find (loaded as {@code null}), so
+ * repeated lookups for missing keys are answered from memory instead of hitting the loader
+ * again. Keys are forgotten once their time-to-live expires, once the negative cache is full,
+ * or as soon as a value is written into the cache for them.
+ */
+@SuppressWarnings("unchecked")
+class NegativeCache {
+
+    final Cache<Object, Boolean> missingKeys;
+
+    NegativeCache( long timeToLive, TimeUnit timeUnit, long maximumSize ) {
+        final Caffeine<Object, Object> builder = Caffeine.newBuilder().expireAfterWrite( timeToLive, timeUnit );
+        if ( maximumSize > 0 )
+            builder.maximumSize( maximumSize );
+        missingKeys = builder.build();
+    }
+
+    boolean isMissing( Object key ) {
+        return missingKeys.getIfPresent( key ) != null;
+    }
+
+    Object remember( Object key, Object value ) {
+        if ( value == null )
+            missingKeys.put( key, Boolean.TRUE );
+        return value;
+    }
+
+    /**
+     * Forgets missing keys as soon as a value is written for them.
+     */
+    CacheWriter writer( CacheWriter writer ) {
+        return new CacheWriter<Object, Object>() {
+            @Override
+            public void write( Object key, Object value ) {
+                missingKeys.invalidate( key );
+                if ( writer != null ) writer.write( key, value );
+            }
+
+            @Override
+            public void delete( Object key, Object value, RemovalCause cause ) {
+                if ( writer != null ) writer.delete( key, value, cause );
+            }
+        };
+    }
+
+    /**
+     * The counterpart of {@link #writer(CacheWriter)} for asynchronous caches, which cannot have a
+     * {@link CacheWriter}: forgets missing keys once a value written for them is removed, so the
+     * next read hits the loader again instead of the remembered miss.
+     */
+    RemovalListener<Object, Object> removalListener() {
+        return (key, value, cause) -> {
+            if ( value != null )
+                missingKeys.invalidate( key );
+        };
+    }
+
+    CacheLoader loader( CacheLoader loader ) {
+        return new CacheLoader<Object, Object>() {
+            @Override
+            public Object load( Object key ) throws Exception {
+                return isMissing( key ) ? null : remember( key, loader.load( key ) );
+            }
+
+            @Override
+            public Map<Object, Object> loadAll( Iterable<?> keys ) throws Exception {
+                final List<Object> unknownKeys = new ArrayList<>();
+                for ( final Object key : keys )
+                    if ( !isMissing( key ) )
+                        unknownKeys.add( key );
+                if ( unknownKeys.isEmpty() )
+                    return Collections.emptyMap();
+
+                Map<Object, Object> loaded;
+                try {
+                    loaded = loader.loadAll( unknownKeys );
+                } catch ( UnsupportedOperationException cause ) {
+                    loaded = new HashMap<>();
+                    for ( final Object key : unknownKeys ) {
+                        final Object value = loader.load( key );
+                        if ( value != null )
+                            loaded.put( key, value );
+                    }
+                }
+
+                for ( final Object key : unknownKeys )
+                    remember( key, loaded.get( key ) );
+                return loaded;
+            }
+
+            @Override
+            public CompletableFuture<Object> asyncReload( Object key, Object oldValue, Executor executor ) {
+                return loader.asyncReload( key, oldValue, executor );
+            }
+        };
+    }
+
+    AsyncCacheLoader asyncLoader( AsyncCacheLoader loader ) {
+        return new AsyncCacheLoader<Object, Object>() {
+            @Override
+            public CompletableFuture<Object> asyncLoad( Object key, Executor executor ) {
+                if ( isMissing( key ) )
+                    return completedFuture( null );
+                return loader.asyncLoad( key, executor ).thenApply( value -> remember( key, value ) );
+            }
+
+            @Override
+            public CompletableFuture<Object> asyncReload( Object key, Object oldValue, Executor executor ) {
+                return loader.asyncReload( key, oldValue, executor );
+            }
+        };
+    }
+}
@@ -0,0 +1,261 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * An off-heap overflow tier for entries evicted by size. Serialized values are appended to
+ * direct {@link ByteBuffer} segments used as ring buffers: once a segment is full it wraps
+ * around and the oldest entries are overwritten (FIFO eviction). Entries are removed from this
+ * tier when they are promoted back to the cache.
+ */
+@Slf4j
+@SuppressWarnings("unchecked")
+class OffHeapStore {
+
+    static final long MAX_SEGMENT_SIZE = 1 << 30;
+    static final int MIN_SEGMENTS = 4;
+
+    final Segment[] segments;
+
+    OffHeapStore( long maxBytes ) {
+        int numberOfSegments = MIN_SEGMENTS;
+        while ( maxBytes / numberOfSegments > MAX_SEGMENT_SIZE )
+            numberOfSegments <<= 1;
+
+        segments = new Segment[ numberOfSegments ];
+        for ( int i = 0; i < numberOfSegments; i++ )
+            segments[i] = new Segment( (int) (maxBytes / numberOfSegments) );
+    }
+
+    void put( Object key, Object value ) {
+        final byte[] bytes = serialize( value );
+        if ( bytes != null )
+            segmentFor( key ).put( key, bytes );
+    }
+
+    /**
+     * Removes the entry from this tier.
+     * @return the stored value or {@code null} when it is not on this tier
+     */
+    Object remove( Object key ) {
+        final byte[] bytes = segmentFor( key ).remove( key );
+        return bytes == null ? null : deserialize( bytes );
+    }
+
+    long estimatedSize() {
+        long size = 0;
+        for ( final Segment segment : segments )
+            size += segment.size();
+        return size;
+    }
+
+    private Segment segmentFor( Object key ) {
+        final int hash = key.hashCode();
+        return segments[ (hash ^ (hash >>> 16)) & (segments.length - 1) ];
+    }
+
+    private static byte[] serialize( Object value ) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream( 256 );
+        try ( final ObjectOutputStream output = new ObjectOutputStream( buffer ) ) {
+            output.writeObject( value );
+        } catch ( IOException cause ) {
+            log.debug( "Could not move " + value + " off-heap. Discarding it...", cause );
+            return null;
+        }
+        return buffer.toByteArray();
+    }
+
+    private static Object deserialize( byte[] bytes ) {
+        try ( final ObjectInputStream input = new ObjectInputStream( new ByteArrayInputStream( bytes ) ) ) {
+            return input.readObject();
+        } catch ( IOException | ClassNotFoundException cause ) {
+            log.warn( "Could not read entry from the off-heap tier. Discarding it...", cause );
+            return null;
+        }
+    }
+
+    /**
+     * Moves entries evicted by size into this tier and drops entries explicitly written or removed.
+     */
+    CacheWriter writer( CacheWriter writer ) {
+        return new CacheWriter<Object, Object>() {
+            @Override
+            public void write( Object key, Object value ) {
+                remove( key );
+                if ( writer != null ) writer.write( key, value );
+            }
+
+            @Override
+            public void delete( Object key, Object value, RemovalCause cause ) {
+                if ( cause == RemovalCause.SIZE && value != null )
+                    put( key, value );
+                else if ( !cause.wasEvicted() )
+                    remove( key );
+                if ( writer != null ) writer.delete( key, value, cause );
+            }
+        };
+    }
+
+    /**
+     * The counterpart of {@link #writer(CacheWriter)} for asynchronous caches, which cannot have a
+     * {@link CacheWriter}: moves entries evicted by size into this tier and drops any other copy, as
+     * it became stale once the entry was removed or replaced in the cache.
+     */
+    RemovalListener<Object, Object> removalListener() {
+        return (key, value, cause) -> {
+            if ( cause == RemovalCause.SIZE && value != null )
+                put( key, value );
+            else
+                remove( key );
+        };
+    }
+
+    /**
+     * Promotes entries from this tier back to the cache before falling back to {@code loader}.
+     */
+    CacheLoader loader( CacheLoader loader ) {
+        return new CacheLoader<Object, Object>() {
+            @Override
+            public Object load( Object key ) throws Exception {
+                final Object value = remove( key );
+                return value != null ? value : loader.load( key );
+            }
+
+            @Override
+            public Map<Object, Object> loadAll( Iterable<?> keys ) throws Exception {
+                final Map<Object, Object> found = new HashMap<>();
+                final List<Object> missingKeys = new ArrayList<>();
+                for ( final Object key : keys ) {
+                    final Object value = remove( key );
+                    if ( value != null )
+                        found.put( key, value );
+                    else
+                        missingKeys.add( key );
+                }
+                if ( missingKeys.isEmpty() )
+                    return found;
+
+                try {
+                    found.putAll( loader.loadAll( missingKeys ) );
+                } catch ( UnsupportedOperationException cause ) {
+                    for ( final Object key : missingKeys ) {
+                        final Object value = loader.load( key );
+                        if ( value != null )
+                            found.put( key, value );
+                    }
+                }
+                return found;
+            }
+
+            @Override
+            public CompletableFuture<Object> asyncReload( Object key, Object oldValue, Executor executor ) {
+                return loader.asyncReload( key, oldValue, executor );
+            }
+        };
+    }
+
+    /**
+     * Promotes entries from this tier back to the cache before falling back to {@code loader}.
+     */
+    AsyncCacheLoader asyncLoader( AsyncCacheLoader loader ) {
+        return new AsyncCacheLoader<Object, Object>() {
+            @Override
+            public CompletableFuture<Object> asyncLoad( Object key, Executor executor ) {
+                final Object value = remove( key );
+                return value != null ? completedFuture( value ) : loader.asyncLoad( key, executor );
+            }
+
+            @Override
+            public CompletableFuture<Object> asyncReload( Object key, Object oldValue, Executor executor ) {
+                return loader.asyncReload( key, oldValue, executor );
+            }
+        };
+    }
+
+    static class Segment {
+
+        final ByteBuffer arena;
+        final Map<Object, Slot> index = new HashMap<>();
+        final TreeMap<Integer, Object> keysByPosition = new TreeMap<>();
+        int writePosition;
+
+        Segment( int capacity ) {
+            arena = ByteBuffer.allocateDirect( capacity );
+        }
+
+        synchronized void put( Object key, byte[] bytes ) {
+            if ( bytes.length > arena.capacity() )
+                return;
+
+            release( key );
+            if ( writePosition + bytes.length > arena.capacity() )
+                writePosition = 0;
+            evictOverlapping( writePosition, bytes.length );
+
+            final ByteBuffer target = arena.duplicate();
+            target.position( writePosition );
+            target.put( bytes );
+
+            index.put( key, new Slot( writePosition, bytes.length ) );
+            keysByPosition.put( writePosition, key );
+            writePosition += bytes.length;
+        }
+
+        private void evictOverlapping( int position, int length ) {
+            final Map<Integer, Object> overwritten = keysByPosition.subMap( position, position + length );
+            for ( final Object key : overwritten.values() )
+                index.remove( key );
+            overwritten.clear();
+        }
+
+        synchronized byte[] remove( Object key ) {
+            final Slot slot = release( key );
+            if ( slot == null )
+                return null;
+
+            final byte[] bytes = new byte[ slot.length ];
+            final ByteBuffer source = arena.duplicate();
+            source.position( slot.position );
+            source.get( bytes );
+            return bytes;
+        }
+
+        private Slot release( Object key ) {
+            final Slot slot = index.remove( key );
+            if ( slot != null )
+                keysByPosition.remove( slot.position );
+            return slot;
+        }
+
+        synchronized int size() {
+            return index.size();
+        }
+    }
+
+    static class Slot {
+
+        final int position, length;
+
+        Slot( int position, int length ) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package kikaha.caffeine;
+
+/**
+ * A store shared by every node, used as the second level of a near-cache. Implementations
+ * annotated with {@code @Named} turn the cache with the same name into its first level: misses
+ * read through to this store and writes go to both levels, while other nodes are told to drop
+ * their copies through the {@link InvalidationChannel} named after the cache.
+ * <p>
+ * Entries evicted from the first level are kept in this store.
+ *
+ * @see FileSecondLevelStore
+ */
+public interface SecondLevelStore<K, V> {
+
+    /**
+     * @return the value stored for {@code key}, or {@code null} if there is none
+     */
+    V get( K key ) throws Exception;
+
+    void put( K key, V value ) throws Exception;
+
+    void remove( K key ) throws Exception;
+}
@@ -0,0 +1,52 @@
+package kikaha.caffeine;
+
+import kikaha.core.modules.security.Session;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Sessions currently being created, indexed by their id. It ensures a session is created only once
+ * per id: the first caller claims the id with a future and creates the session outside of any lock,
+ * while concurrent callers for the same id wait on that future. Creations of unrelated ids never
+ * wait on each other, and creators may create other sessions themselves.
+ */
+class SessionCreations {
+
+    private final ConcurrentMap<String, CompletableFuture<Session>> inProgress = new ConcurrentHashMap<>();
+
+    /**
+     * @return the session {@code creator} created for {@code sessionId}, on this thread or on a concurrent one
+     */
+    Session createOnce( String sessionId, Supplier<Session> creator ) {
+        final CompletableFuture<Session> claimed = new CompletableFuture<>();
+        final CompletableFuture<Session> concurrent = inProgress.putIfAbsent( sessionId, claimed );
+        if ( concurrent != null )
+            return join( concurrent );
+
+        try {
+            final Session session = creator.get();
+            claimed.complete( session );
+            return session;
+        } catch ( RuntimeException | Error cause ) {
+            claimed.completeExceptionally( cause );
+            throw cause;
+        } finally {
+            // the session is already on the cache at this point, so late comers will find it there
+            inProgress.remove( sessionId, claimed );
+        }
+    }
+
+    private static Session join( CompletableFuture<Session> future ) {
+        try {
+            return future.join();
+        } catch ( CompletionException cause ) {
+            if ( cause.getCause() instanceof RuntimeException )
+                throw (RuntimeException) cause.getCause();
+            throw cause;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+import kikaha.core.modules.security.Session;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * An {@link Expiry} that lets sessions expire after a period without access that depends on
+ * whether they are authenticated or not. It allows anonymous sessions (e.g. from crawlers) to
+ * be dropped much sooner than the sessions of logged users. Values that are not sessions are
+ * handled as authenticated sessions.
+ * <p>
+ * It is used by caches configured with {@code expiration.anonymous-time-after-access} or
+ * {@code expiration.authenticated-time-after-access}.
+ */
+@RequiredArgsConstructor
+public class SessionExpiry implements Expiry<Object, Object> {
+
+    final long anonymousTimeToLiveInNanos, authenticatedTimeToLiveInNanos;
+
+    @Override
+    public long expireAfterCreate( Object key, Object value, long currentTime ) {
+        return timeToLiveOf( value );
+    }
+
+    @Override
+    public long expireAfterUpdate( Object key, Object value, long currentTime, long currentDuration ) {
+        return timeToLiveOf( value );
+    }
+
+    @Override
+    public long expireAfterRead( Object key, Object value, long currentTime, long currentDuration ) {
+        return timeToLiveOf( value );
+    }
+
+    long timeToLiveOf( Object value ) {
+        final boolean isAnonymous = value instanceof CompactSession
+                ? !((CompactSession) value).authenticated
+                : value instanceof Session && ((Session) value).getAuthenticatedAccount() == null;
+        return isAnonymous ? anonymousTimeToLiveInNanos : authenticatedTimeToLiveInNanos;
+    }
+}
@@ -0,0 +1,37 @@
+package kikaha.caffeine;
+
+import kikaha.core.modules.security.Session;
+
+/**
+ * Defines how the session stores handle {@code flush} calls, configured through
+ * {@code server.cache.session-cache.flush-mode} ({@code async-session-cache.flush-mode} for the
+ * asynchronous store). Defaults to {@link #ALWAYS}; {@link #CHANGED} and {@link #TOUCH} are opt-in, as they rely on the session being modified through its own methods:
+ * changes made to mutable attribute values are not noticed, thus not written back.
+ */
+public enum SessionFlushMode {
+
+    /** Every flush writes the session back into the cache. The default. */
+    ALWAYS,
+
+    /** Only sessions modified since their last flush are written back into the cache. */
+    CHANGED,
+
+    /**
+     * Like {@link #CHANGED}, but unchanged sessions are read from the cache,
+     * renewing their {@code expiration.time-after-access} without writing them.
+     */
+    TOUCH;
+
+    static SessionFlushMode from( String mode ) {
+        return valueOf( mode.toUpperCase().replace( '-', '_' ) );
+    }
+
+    /**
+     * @return {@code true} if {@code session} should be written back into the cache
+     */
+    boolean shouldStore( Session session ) {
+        return this == ALWAYS
+            || !( session instanceof TrackedSession )
+            || ((TrackedSession) session).markAsFlushed();
+    }
+}
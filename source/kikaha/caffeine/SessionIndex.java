@@ -0,0 +1,107 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import io.undertow.security.idm.Account;
+import kikaha.core.modules.security.Session;
+import lombok.RequiredArgsConstructor;
+
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Indexes the ids of the authenticated sessions stored on {@code session-cache} by the name of
+ * their principals, so every session of a user can be found without scanning the cache. Sessions
+ * are indexed as they are stored and leave the index once they are invalidated or evicted. Anonymous
+ * sessions are not indexed.
+ * <p>
+ * Each indexed session remembers the value stored on the cache, so the removal of a value replaced
+ * in the meantime (e.g. a session evicted and then stored again) does not remove the newer one.
+ * <p>
+ * {@link CaffeineSessionStore} chains it to the removals of its cache, so a {@link RemovalListener}
+ * named after {@code session-cache} is still notified as well.
+ */
+@Singleton
+public class SessionIndex implements RemovalListener<String, Object> {
+
+    private final ConcurrentMap<String, Indexed> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> sessionIdsByPrincipal = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes {@code stored}, the value stored on the cache for {@code session}. Should be called before it is stored.
+     */
+    void index( String sessionId, Session session, Object stored ) {
+        final String principal = principalOf( session );
+        sessions.compute( sessionId, (id, previous) -> {
+            if ( previous != null && !previous.principal.equals( principal ) )
+                unlink( previous.principal, id );
+            if ( principal == null )
+                return null;
+            link( principal, id );
+            return new Indexed( principal, stored );
+        });
+    }
+
+    void remove( String sessionId ) {
+        sessions.computeIfPresent( sessionId, (id, indexed) -> {
+            unlink( indexed.principal, id );
+            return null;
+        });
+    }
+
+    @Override
+    public void onRemoval( String sessionId, Object value, RemovalCause cause ) {
+        if ( sessionId == null || cause == RemovalCause.REPLACED )
+            return;
+        sessions.computeIfPresent( sessionId, (id, indexed) -> {
+            if ( indexed.stored != value )
+                return indexed;
+            unlink( indexed.principal, id );
+            return null;
+        });
+    }
+
+    /**
+     * @return a copy of the ids of the sessions authenticated as {@code principal}
+     */
+    Set<String> sessionIdsOf( String principal ) {
+        final Set<String> ids = sessionIdsByPrincipal.get( principal );
+        return ids == null ? Collections.emptySet() : new HashSet<>( ids );
+    }
+
+    int countSessionsOf( String principal ) {
+        final Set<String> ids = sessionIdsByPrincipal.get( principal );
+        return ids == null ? 0 : ids.size();
+    }
+
+    private void link( String principal, String sessionId ) {
+        sessionIdsByPrincipal.compute( principal, (p, ids) -> {
+            if ( ids == null )
+                ids = ConcurrentHashMap.newKeySet();
+            ids.add( sessionId );
+            return ids;
+        });
+    }
+
+    private void unlink( String principal, String sessionId ) {
+        sessionIdsByPrincipal.computeIfPresent( principal, (p, ids) -> {
+            ids.remove( sessionId );
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    static String principalOf( Session session ) {
+        if ( session instanceof CompactSession )
+            return ((CompactSession) session).principal;
+        final Account account = session.getAuthenticatedAccount();
+        return account != null && account.getPrincipal() != null ? account.getPrincipal().getName() : null;
+    }
+
+    @RequiredArgsConstructor
+    private static class Indexed {
+        final String principal;
+        final Object stored;
+    }
+}
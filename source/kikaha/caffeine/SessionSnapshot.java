@@ -0,0 +1,162 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import kikaha.core.modules.security.Session;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Writes the live sessions of a cache into a compact binary file and reads them back.
+ * Each record holds the session id, the wall-clock time it is supposed to expire and
+ * the serialized session. Records that expired while the application was down are
+ * discarded on read.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class SessionSnapshot {
+
+    static final int MAGIC = 0x4b435353, VERSION = 1, END_OF_RECORDS = -1;
+    static final long NEVER_EXPIRES = Long.MAX_VALUE;
+
+    final Path file;
+
+    /**
+     * Streams every live session from {@code cache} into the snapshot file. The file is
+     * written aside and atomically moved into place, so a crash never leaves a broken snapshot.
+     */
+    int write( Cache<String, Session> cache ) throws IOException {
+        final Path tmp = file.resolveSibling( file.getFileName() + ".tmp" );
+        final long now = System.currentTimeMillis();
+        final Policy<String, Session> policy = cache.policy();
+        int written = 0;
+
+        try ( final FileChannel channel = FileChannel.open( tmp, CREATE, WRITE, TRUNCATE_EXISTING );
+              final DataOutputStream output = new DataOutputStream( new BufferedOutputStream( Channels.newOutputStream( channel ), 1 << 16 ) ) ) {
+            output.writeInt( MAGIC );
+            output.writeInt( VERSION );
+
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream( 512 );
+            for ( final Map.Entry<String, Session> entry : cache.asMap().entrySet() ) {
+                final long remaining = remainingTimeToLive( policy, entry.getKey() );
+                if ( remaining <= 0 || !serialize( entry.getValue(), buffer ) )
+                    continue;
+
+                final byte[] id = entry.getKey().getBytes( UTF_8 );
+                output.writeInt( id.length );
+                output.write( id );
+                output.writeLong( remaining == NEVER_EXPIRES ? NEVER_EXPIRES : now + remaining );
+                output.writeInt( buffer.size() );
+                buffer.writeTo( output );
+                written++;
+            }
+            output.writeInt( END_OF_RECORDS );
+        }
+
+        Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        return written;
+    }
+
+    private static boolean serialize( Session session, ByteArrayOutputStream buffer ) {
+        buffer.reset();
+        try ( final ObjectOutputStream output = new ObjectOutputStream( buffer ) ) {
+            output.writeObject( session );
+            return true;
+        } catch ( IOException cause ) {
+            log.warn( "Could not serialize session " + session.getId() + ". Ignoring it...", cause );
+            return false;
+        }
+    }
+
+    static long remainingTimeToLive( Policy<String, Session> policy, String sessionId ) {
+        long remaining = NEVER_EXPIRES;
+        for ( final Optional<Policy.Expiration<String, Session>> expiration : Arrays.asList( policy.expireAfterAccess(), policy.expireAfterWrite() ) )
+            if ( expiration.isPresent() ) {
+                final OptionalLong age = expiration.get().ageOf( sessionId, TimeUnit.MILLISECONDS );
+                if ( age.isPresent() )
+                    remaining = Math.min( remaining, expiration.get().getExpiresAfter( TimeUnit.MILLISECONDS ) - age.getAsLong() );
+            }
+
+        final Optional<Policy.VarExpiration<String, Session>> variable = policy.expireVariably();
+        if ( variable.isPresent() ) {
+            final OptionalLong expiresAfter = variable.get().getExpiresAfter( sessionId, TimeUnit.MILLISECONDS );
+            if ( expiresAfter.isPresent() )
+                remaining = Math.min( remaining, expiresAfter.getAsLong() );
+        }
+        return remaining;
+    }
+
+    /**
+     * Reads the snapshot file back. The file is memory-mapped and split into records
+     * sequentially, then the sessions are deserialized in parallel.
+     *
+     * @return the records that have not expired yet, with their sessions deserialized
+     */
+    List<Record> readRecords() throws IOException {
+        if ( !Files.exists( file ) )
+            return Collections.emptyList();
+
+        final List<Record> records = new ArrayList<>();
+        try ( final FileChannel channel = FileChannel.open( file, READ ) ) {
+            final MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            if ( buffer.getInt() != MAGIC || buffer.getInt() != VERSION )
+                throw new IOException( "Unsupported session snapshot: " + file );
+
+            final long now = System.currentTimeMillis();
+            int idLength;
+            while ( ( idLength = buffer.getInt() ) != END_OF_RECORDS ) {
+                final byte[] id = new byte[ idLength ];
+                buffer.get( id );
+                final long expiresAt = buffer.getLong();
+                final byte[] payload = new byte[ buffer.getInt() ];
+                buffer.get( payload );
+                if ( expiresAt > now )
+                    records.add( new Record( new String( id, UTF_8 ), expiresAt, payload ) );
+            }
+        } catch ( BufferUnderflowException cause ) {
+            throw new IOException( "Truncated session snapshot: " + file, cause );
+        }
+
+        records.parallelStream().forEach( Record::deserialize );
+        records.removeIf( r -> r.session == null );
+        return records;
+    }
+
+    @RequiredArgsConstructor
+    static class Record {
+
+        final String id;
+        final long expiresAt;
+        final byte[] payload;
+        Session session;
+
+        void deserialize(){
+            try ( final ObjectInputStream input = new ObjectInputStream( new ByteArrayInputStream( payload ) ) ) {
+                session = (Session) input.readObject();
+            } catch ( IOException | ClassNotFoundException cause ) {
+                log.warn( "Could not deserialize session " + id + ". Ignoring it...", cause );
+            }
+        }
+
+        /**
+         * @return the milliseconds left before the session expires, or {@link #NEVER_EXPIRES}
+         */
+        long remainingTimeToLive( long now ) {
+            return expiresAt == NEVER_EXPIRES ? NEVER_EXPIRES : expiresAt - now;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.Delegate;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static kikaha.caffeine.AccessTrace.Event.READ;
+import static kikaha.caffeine.AccessTrace.Event.WRITE;
+
+/**
+ * An {@link AsyncLoadingCache} that records its reads and writes on an {@link AccessRecorder}.
+ * Calls made through its {@link #synchronous()} view are not recorded.
+ */
+@RequiredArgsConstructor
+class TracedAsyncLoadingCache<K, V> implements AsyncLoadingCache<K, V> {
+
+    @Delegate(excludes = Traced.class)
+    final AsyncLoadingCache<K, V> cache;
+    final AccessRecorder recorder;
+
+    @Override
+    public CompletableFuture<V> getIfPresent( Object key ) {
+        recorder.record( READ, key );
+        return cache.getIfPresent( key );
+    }
+
+    @Override
+    public CompletableFuture<V> get( K key, Function<? super K, ? extends V> mappingFunction ) {
+        recorder.record( READ, key );
+        return cache.get( key, mappingFunction );
+    }
+
+    @Override
+    public CompletableFuture<V> get( K key, BiFunction<? super K, Executor, CompletableFuture<V>> mappingFunction ) {
+        recorder.record( READ, key );
+        return cache.get( key, mappingFunction );
+    }
+
+    @Override
+    public CompletableFuture<V> get( K key ) {
+        recorder.record( READ, key );
+        return cache.get( key );
+    }
+
+    @Override
+    public CompletableFuture<Map<K, V>> getAll( Iterable<? extends K> keys ) {
+        for ( final K key : keys )
+            recorder.record( READ, key );
+        return cache.getAll( keys );
+    }
+
+    @Override
+    public void put( K key, CompletableFuture<V> valueFuture ) {
+        recorder.record( WRITE, key );
+        cache.put( key, valueFuture );
+    }
+
+    private interface Traced {
+        Object getIfPresent( Object key );
+        Object get( Object key, Function mappingFunction );
+        Object get( Object key, BiFunction mappingFunction );
+        Object get( Object key );
+        Object getAll( Iterable keys );
+        void put( Object key, CompletableFuture valueFuture );
+    }
+}
@@ -0,0 +1,83 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.Delegate;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import static kikaha.caffeine.AccessTrace.Event.*;
+
+/**
+ * A {@link Cache} that records its reads, writes and removals on an {@link AccessRecorder}.
+ */
+@RequiredArgsConstructor
+class TracedCache<K, V> implements Cache<K, V> {
+
+    @Delegate(excludes = Traced.class)
+    final Cache<K, V> cache;
+    final AccessRecorder recorder;
+
+    @Override
+    public V getIfPresent( Object key ) {
+        recorder.record( READ, key );
+        return cache.getIfPresent( key );
+    }
+
+    @Override
+    public V get( K key, Function<? super K, ? extends V> mappingFunction ) {
+        recorder.record( READ, key );
+        return cache.get( key, mappingFunction );
+    }
+
+    @Override
+    public Map<K, V> getAllPresent( Iterable<?> keys ) {
+        for ( final Object key : keys )
+            recorder.record( READ, key );
+        return cache.getAllPresent( keys );
+    }
+
+    @Override
+    public void put( K key, V value ) {
+        recorder.record( WRITE, key );
+        cache.put( key, value );
+    }
+
+    @Override
+    public void putAll( Map<? extends K, ? extends V> map ) {
+        for ( final K key : map.keySet() )
+            recorder.record( WRITE, key );
+        cache.putAll( map );
+    }
+
+    @Override
+    public void invalidate( Object key ) {
+        recorder.record( REMOVE, key );
+        cache.invalidate( key );
+    }
+
+    @Override
+    public void invalidateAll( Iterable<?> keys ) {
+        for ( final Object key : keys )
+            recorder.record( REMOVE, key );
+        cache.invalidateAll( keys );
+    }
+
+    @Override
+    public void invalidateAll() {
+        recorder.record( CLEAR, null );
+        cache.invalidateAll();
+    }
+
+    private interface Traced {
+        Object getIfPresent( Object key );
+        Object get( Object key, Function mappingFunction );
+        Map getAllPresent( Iterable keys );
+        void put( Object key, Object value );
+        void putAll( Map map );
+        void invalidate( Object key );
+        void invalidateAll( Iterable keys );
+        void invalidateAll();
+    }
+}
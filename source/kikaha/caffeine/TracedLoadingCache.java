@@ -0,0 +1,38 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import java.util.Map;
+
+import static kikaha.caffeine.AccessTrace.Event.READ;
+
+/**
+ * A {@link LoadingCache} that records its reads, writes and removals on an {@link AccessRecorder}.
+ */
+class TracedLoadingCache<K, V> extends TracedCache<K, V> implements LoadingCache<K, V> {
+
+    final LoadingCache<K, V> loadingCache;
+
+    TracedLoadingCache( LoadingCache<K, V> loadingCache, AccessRecorder recorder ) {
+        super( loadingCache, recorder );
+        this.loadingCache = loadingCache;
+    }
+
+    @Override
+    public V get( K key ) {
+        recorder.record( READ, key );
+        return loadingCache.get( key );
+    }
+
+    @Override
+    public Map<K, V> getAll( Iterable<? extends K> keys ) {
+        for ( final K key : keys )
+            recorder.record( READ, key );
+        return loadingCache.getAll( keys );
+    }
+
+    @Override
+    public void refresh( K key ) {
+        loadingCache.refresh( key );
+    }
+}
@@ -0,0 +1,70 @@
+package kikaha.caffeine;
+
+import io.undertow.security.idm.Account;
+import kikaha.core.modules.security.Session;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.Delegate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link Session} that remembers whether it was modified since it was last flushed.
+ * Only changes made through the session itself are tracked: mutable attributes changed
+ * in place will not mark the session as changed.
+ */
+@RequiredArgsConstructor
+class TrackedSession implements Session {
+
+    @NonNull @Delegate(excludes = Mutators.class)
+    final Session session;
+
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    @Override
+    public void setAttribute( String name, Object value ) {
+        session.setAttribute( name, value );
+        changed.set( true );
+    }
+
+    @Override
+    public void removeAttribute( String name ) {
+        session.removeAttribute( name );
+        changed.set( true );
+    }
+
+    @Override
+    public void setAuthenticatedAccount( Account account ) {
+        session.setAuthenticatedAccount( account );
+        changed.set( true );
+    }
+
+    /**
+     * Marks the session as flushed.
+     * @return {@code true} if the session was modified since it was last flushed
+     */
+    boolean markAsFlushed() {
+        return changed.getAndSet( false );
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+        return session.equals( obj instanceof TrackedSession ? ((TrackedSession) obj).session : obj );
+    }
+
+    @Override
+    public int hashCode() {
+        return session.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return session.toString();
+    }
+
+    private interface Mutators {
+        void setAttribute( String name, Object value );
+        void removeAttribute( String name );
+        void setAuthenticatedAccount( Account account );
+    }
+}
@@ -0,0 +1,207 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link CacheWriter} that queues writes and hands them to a {@link BatchCacheWriter} in
+ * background. Queued changes are coalesced per key, and a batch is flushed as soon as it
+ * reaches {@code batchSize} entries or {@code maxDelay} milliseconds after the previous flush.
+ * When {@code queueCapacity} distinct keys are pending, writers wait for the next flush.
+ * <p>
+ * A batch the {@link BatchCacheWriter} fails to write is retried up to {@code maxRetries} times,
+ * waiting {@code retryDelay} milliseconds before the first retry and twice as long before each
+ * of the next ones, up to {@link #MAX_RETRY_DELAY_IN_MILLIS}. Entries still not written are
+ * discarded and counted by {@link #failedWrites()}.
+ * <p>
+ * Once {@link #close()} has flushed every pending change, the writer no longer queues
+ * anything: later changes are written through on the calling thread.
+ */
+@Slf4j
+@SuppressWarnings("unchecked")
+class WriteBehindCacheWriter<K, V> implements CacheWriter<K, V>, AutoCloseable {
+
+    static final Object DELETED = new Object();
+    static final int DEFAULT_MAX_RETRIES = 3;
+    static final long DEFAULT_RETRY_DELAY_IN_MILLIS = 100, MAX_RETRY_DELAY_IN_MILLIS = 10_000;
+
+    final BatchCacheWriter<K, V> batchWriter;
+    final int batchSize, queueCapacity, maxRetries;
+    final long maxDelayInNanos, retryDelayInMillis;
+
+    private final Map<K, Object> pending = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition(), batchReady = lock.newCondition();
+    private final Thread flusher;
+    private final AtomicLong failedWrites = new AtomicLong();
+    private volatile boolean running = true;
+    private boolean drained;
+
+    WriteBehindCacheWriter( String name, BatchCacheWriter<K, V> batchWriter, int batchSize, long maxDelay, int queueCapacity ) {
+        this( name, batchWriter, batchSize, maxDelay, queueCapacity, DEFAULT_MAX_RETRIES, DEFAULT_RETRY_DELAY_IN_MILLIS );
+    }
+
+    WriteBehindCacheWriter( String name, BatchCacheWriter<K, V> batchWriter, int batchSize, long maxDelay, int queueCapacity,
+                            int maxRetries, long retryDelay ) {
+        this.batchWriter = batchWriter;
+        this.batchSize = batchSize;
+        this.maxDelayInNanos = TimeUnit.MILLISECONDS.toNanos( maxDelay );
+        this.queueCapacity = Math.max( queueCapacity, batchSize );
+        this.maxRetries = Math.max( 0, maxRetries );
+        this.retryDelayInMillis = Math.max( 1, retryDelay );
+        this.flusher = new Thread( this::flushContinuously, name + "-write-behind" );
+        this.flusher.setDaemon( true );
+        this.flusher.start();
+    }
+
+    @Override
+    public void write( K key, V value ) {
+        enqueue( key, value );
+    }
+
+    @Override
+    public void delete( K key, V value, RemovalCause cause ) {
+        if ( !cause.wasEvicted() )
+            enqueue( key, DELETED );
+    }
+
+    private void enqueue( K key, Object value ) {
+        lock.lock();
+        try {
+            while ( !drained && pending.size() >= queueCapacity && !pending.containsKey( key ) )
+                notFull.awaitUninterruptibly();
+            if ( !drained ) {
+                pending.put( key, value );
+                if ( pending.size() >= batchSize )
+                    batchReady.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        flush( Collections.singletonMap( key, value ) );
+    }
+
+    private void flushContinuously() {
+        while ( keepFlushing() )
+            flush( nextBatch() );
+    }
+
+    private boolean keepFlushing() {
+        lock.lock();
+        try {
+            if ( running || !pending.isEmpty() )
+                return true;
+            drained = true;
+            notFull.signalAll();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<K, Object> nextBatch() {
+        lock.lock();
+        try {
+            long remaining = maxDelayInNanos;
+            while ( running && pending.size() < batchSize && remaining > 0 )
+                remaining = batchReady.awaitNanos( remaining );
+
+            final Map<K, Object> batch = new LinkedHashMap<>();
+            final Iterator<Map.Entry<K, Object>> iterator = pending.entrySet().iterator();
+            while ( iterator.hasNext() && batch.size() < batchSize ) {
+                final Map.Entry<K, Object> entry = iterator.next();
+                batch.put( entry.getKey(), entry.getValue() );
+                iterator.remove();
+            }
+            notFull.signalAll();
+            return batch;
+        } catch ( InterruptedException cause ) {
+            running = false;
+            return Collections.emptyMap();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush( Map<K, Object> batch ) {
+        if ( batch.isEmpty() )
+            return;
+
+        final Map<K, V> writes = new LinkedHashMap<>();
+        final List<K> deletes = new ArrayList<>();
+        for ( final Map.Entry<K, Object> entry : batch.entrySet() )
+            if ( entry.getValue() == DELETED )
+                deletes.add( entry.getKey() );
+            else
+                writes.put( entry.getKey(), (V) entry.getValue() );
+
+        if ( !writes.isEmpty() )
+            flushWithRetries( "write", writes.size(), () -> batchWriter.writeAll( writes ) );
+        if ( !deletes.isEmpty() )
+            flushWithRetries( "delete", deletes.size(), () -> batchWriter.deleteAll( deletes ) );
+    }
+
+    private void flushWithRetries( String operation, int entries, Flush flush ) {
+        long retryDelay = retryDelayInMillis;
+        for ( int attempt = 1; ; attempt++ )
+            try {
+                flush.run();
+                return;
+            } catch ( Exception cause ) {
+                if ( attempt > maxRetries || !sleep( retryDelay ) ) {
+                    failedWrites.addAndGet( entries );
+                    log.error( "Could not " + operation + " " + entries + " entries into " + batchWriter
+                            + " after " + attempt + " attempts. Discarding them...", cause );
+                    return;
+                }
+                log.warn( "Could not " + operation + " " + entries + " entries into " + batchWriter
+                        + ". Retrying in " + retryDelay + "ms...", cause );
+                retryDelay = Math.min( retryDelay * 2, MAX_RETRY_DELAY_IN_MILLIS );
+            }
+    }
+
+    private static boolean sleep( long millis ) {
+        try {
+            Thread.sleep( millis );
+            return true;
+        } catch ( InterruptedException cause ) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of entries discarded because the {@link BatchCacheWriter} kept failing to write them
+     */
+    long failedWrites() {
+        return failedWrites.get();
+    }
+
+    /**
+     * Stops the background flusher once every pending write is flushed. Changes made
+     * afterwards are written through synchronously.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            running = false;
+            batchReady.signal();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join();
+    }
+
+    private interface Flush {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,69 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.Arrays.asList;
+import static kikaha.caffeine.AccessTrace.Event.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link AccessTraceRecorder} and the caches it traces.
+ */
+public class AccessTraceRecorderTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void canEncodeEvents(){
+        final long record = AccessTrace.encode( REMOVE, -42, 1234 );
+        assertNotEquals( 0, record );
+        assertEquals( -42, AccessTrace.keyHashOf( record ) );
+        assertEquals( 1234, AccessTrace.millisOf( record ) );
+        assertEquals( REMOVE, AccessTrace.eventOf( record ) );
+    }
+
+    @Test
+    public void willRecordTheAccessesOfTracedCaches() throws Exception {
+        final Path file = folder.newFile( "cache.trace" ).toPath();
+        final AccessTraceRecorder recorder = new AccessTraceRecorder( file, 1024 );
+        final LoadingCache<String, Integer> cache = new TracedLoadingCache<>(
+                Caffeine.newBuilder().build( Integer::valueOf ), recorder );
+
+        cache.get( "1" );
+        cache.put( "2", 2 );
+        cache.getAll( asList( "1", "2" ) );
+        cache.invalidate( "1" );
+        recorder.close();
+
+        final List<AccessTrace.Event> events = new ArrayList<>();
+        final List<Integer> keyHashes = new ArrayList<>();
+        AccessTrace.replay( file, record -> {
+            events.add( AccessTrace.eventOf( record ) );
+            keyHashes.add( AccessTrace.keyHashOf( record ) );
+        });
+
+        assertEquals( asList( READ, WRITE, READ, READ, REMOVE ), events );
+        assertEquals( AccessTrace.hashOf( "1" ), (int) keyHashes.get( 0 ) );
+        assertEquals( AccessTrace.hashOf( "2" ), (int) keyHashes.get( 1 ) );
+    }
+
+    @Test
+    public void willNotLoseEventsRecordedConcurrently() throws Exception {
+        final Path file = folder.newFile( "concurrent.trace" ).toPath();
+        final AccessTraceRecorder recorder = new AccessTraceRecorder( file, 1 << 20 );
+        IntStream.range( 0, 100_000 ).parallel().forEach( i -> recorder.record( READ, i ) );
+        recorder.close();
+
+        assertEquals( 0, recorder.dropped.sum() );
+        assertEquals( 100_000, AccessTrace.replay( file, record -> {} ) );
+    }
+}
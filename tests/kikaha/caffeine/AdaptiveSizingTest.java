@@ -0,0 +1,75 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link AdaptiveSizing}.
+ */
+public class AdaptiveSizingTest {
+
+    final AdaptiveSizing adaptiveSizing = new AdaptiveSizing( 0.6, 0.85, 0.5, 0.1, 0, () -> 0 );
+    final Cache<Integer, Integer> cache = Caffeine.newBuilder()
+            .maximumSize( 100 ).executor( Runnable::run ).recordStats().build();
+
+    @Test
+    public void willShrinkCachesUnderMemoryPressure(){
+        assertTrue( adaptiveSizing.register( "cache", cache, 30, 1000 ) );
+
+        adaptiveSizing.adjust( 0.9 );
+        assertEquals( 50, maximumOf( cache ) );
+        adaptiveSizing.adjust( 0.9 );
+        assertEquals( 30, maximumOf( cache ) );
+    }
+
+    @Test
+    public void willShrinkAtMostOncePerIntervalOnRepeatedGarbageCollections(){
+        final AdaptiveSizing rateLimited = new AdaptiveSizing( 0.6, 0.85, 0.5, 0.1, 60_000, () -> 0 );
+        rateLimited.register( "cache", cache, 1, 1000 );
+
+        for ( int i = 0; i < 10; i++ )
+            rateLimited.adjust( 0.9 );
+        assertEquals( 50, maximumOf( cache ) );
+    }
+
+    @Test
+    public void willGrowFullCachesThatAreMissingWhenThereIsHeadroom(){
+        adaptiveSizing.register( "cache", cache, 30, 105 );
+
+        adaptiveSizing.adjust( 0.3 );
+        assertEquals( 100, maximumOf( cache ) );
+
+        for ( int i = 0; i < 100; i++ )
+            cache.get( i, k -> k );
+        adaptiveSizing.adjust( 0.3 );
+        assertEquals( 105, maximumOf( cache ) );
+    }
+
+    @Test
+    public void willKeepTheSizeWhenTheHeapIsBetweenTheWatermarks(){
+        adaptiveSizing.register( "cache", cache, 30, 1000 );
+        for ( int i = 0; i < 100; i++ )
+            cache.get( i, k -> k );
+
+        adaptiveSizing.adjust( 0.7 );
+        assertEquals( 100, maximumOf( cache ) );
+    }
+
+    @Test
+    public void willNotRegisterUnboundedCaches(){
+        assertFalse( adaptiveSizing.register( "unbounded", Caffeine.newBuilder().build(), 1, 10 ) );
+    }
+
+    @Test
+    public void canMeasureTheHeapOccupancy(){
+        final double occupancy = AdaptiveSizing.measureHeapOccupancy();
+        assertTrue( occupancy > 0 && occupancy <= 1 );
+    }
+
+    static long maximumOf( Cache<?, ?> cache ) {
+        return cache.policy().eviction().get().getMaximum();
+    }
+}
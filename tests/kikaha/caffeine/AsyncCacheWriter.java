@@ -0,0 +1,20 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * A {@link CacheWriter} named after a cache that is only ever built as an asynchronous one.
+ */
+@Singleton @Named( "async-with-writer" )
+public class AsyncCacheWriter implements CacheWriter<String, String> {
+
+    @Override
+    public void write(String key, String value) {}
+
+    @Override
+    public void delete(String key, String value, RemovalCause removalCause) {}
+}
@@ -0,0 +1,121 @@
+package kikaha.caffeine;
+
+import io.undertow.server.Connectors;
+import io.undertow.server.HttpServerExchange;
+import kikaha.core.modules.security.DefaultSession;
+import kikaha.core.modules.security.Session;
+import kikaha.core.modules.security.SessionCookie;
+import kikaha.core.test.KikahaRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.inject.Inject;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static kikaha.caffeine.CaffeineSessionStoreTest.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link AsyncCaffeineSessionStore}.
+ */
+@RunWith(KikahaRunner.class)
+public class AsyncCaffeineSessionStoreTest {
+
+    @Inject AsyncCaffeineSessionStore sessionStore;
+    @Inject SessionCookie sessionIdManager;
+
+    @Before
+    public void cleanUpSession(){
+        sessionStore.sessionCache.synchronous().invalidateAll();
+    }
+
+    @Test( timeout = 3000 )
+    public void createSessionInline() throws Exception {
+        assertNull(MSG_NO_SESSION_REQUIRED_BEFORE_CREATION, sessionStore.getSessionFromCache( SESSION_ID ) );
+
+        final CompletableFuture<Session> future = sessionStore.createOrRetrieveSessionAsync( createExchange(), sessionIdManager );
+        assertTrue( future.isDone() );
+
+        final Session session = future.get();
+        assertEquals( SESSION_ID, session.getId() );
+        assertEquals( session, sessionStore.getSessionFromCache( SESSION_ID ) );
+    }
+
+    @Test( timeout = 3000 )
+    public void handleCacheHitsOnTheCurrentThread() throws Exception {
+        final Session session = new DefaultSession( SESSION_ID );
+        sessionStore.sessionCache.put( SESSION_ID, completedFuture( session ) );
+
+        final HttpServerExchange exchange = createExchange();
+        final AtomicReference<Thread> handlerThread = new AtomicReference<>();
+        final AtomicReference<Session> found = new AtomicReference<>();
+        sessionStore.createOrRetrieveSession( exchange, sessionIdManager, (e, s) -> {
+            handlerThread.set( Thread.currentThread() );
+            found.set( s );
+        });
+
+        assertEquals( Thread.currentThread(), handlerThread.get() );
+        assertEquals( session, found.get() );
+        assertFalse( exchange.isDispatched() );
+    }
+
+    @Test( timeout = 3000 )
+    public void willNotBlockTheCurrentThreadOnSlowLoads() throws Exception {
+        final CompletableFuture<Session> slowLoad = new CompletableFuture<>();
+        sessionStore.sessionCache.put( SESSION_ID, slowLoad );
+
+        final HttpServerExchange exchange = createExchange();
+        final AtomicReference<Thread> handlerThread = new AtomicReference<>();
+        final AtomicReference<Session> found = new AtomicReference<>();
+        Connectors.executeRootHandler( sessionStore.resolvingSessionsBefore( e -> {
+            handlerThread.set( Thread.currentThread() );
+            found.set( sessionStore.createOrRetrieveSession( e, sessionIdManager ) );
+        }, sessionIdManager ), exchange );
+        assertNull( handlerThread.get() );
+
+        final Session session = new DefaultSession( SESSION_ID );
+        final Thread loader = new Thread( () -> slowLoad.complete( session ), "slow-loader" );
+        loader.start();
+        loader.join();
+
+        assertEquals( loader, handlerThread.get() );
+        assertEquals( session, found.get() );
+    }
+
+    @Test( timeout = 3000 )
+    public void willNotWaitForSessionsBeingLoadedWhenReadingTheCache(){
+        final CompletableFuture<Session> slowLoad = new CompletableFuture<>();
+        sessionStore.sessionCache.put( SESSION_ID, slowLoad );
+        assertNull( sessionStore.getSessionFromCache( SESSION_ID ) );
+
+        final Session session = new DefaultSession( SESSION_ID );
+        slowLoad.complete( session );
+        assertEquals( session, sessionStore.getSessionFromCache( SESSION_ID ) );
+    }
+
+    @Test
+    public void invalidateSession() throws Exception {
+        final Session session = new DefaultSession( SESSION_ID );
+        sessionStore.storeSession( SESSION_ID, session );
+        assertEquals( session, sessionStore.getSessionFromCache( SESSION_ID ) );
+
+        sessionStore.invalidateSession( session );
+        assertNull(MSG_NO_SESSION_REQUIRED_AFTER_INVALIDATION, sessionStore.getSessionFromCache( SESSION_ID ) );
+    }
+
+    @Test
+    public void flush() throws Exception {
+        final Session session = new DefaultSession( SESSION_ID );
+        sessionStore.storeSession( SESSION_ID, session );
+
+        session.setAttribute( "a", "b" );
+        sessionStore.flush( session );
+
+        final Session found = sessionStore.getSessionFromCache( SESSION_ID );
+        assertNotNull( found );
+        assertEquals( "b", found.getAttribute( "a" ) );
+    }
+}
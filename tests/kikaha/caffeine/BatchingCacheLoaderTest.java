@@ -0,0 +1,98 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import kikaha.core.util.Threads;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link BatchingCacheLoader}.
+ */
+public class BatchingCacheLoaderTest {
+
+    final BulkLoader bulkLoader = new BulkLoader();
+
+    @Test( timeout = 3000 )
+    public void willCoalesceConcurrentMissesIntoBulkLoads(){
+        final LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+                .build( BatchingCacheLoader.wrap( bulkLoader, ForkJoinPool.commonPool(), 100, 50 ) );
+
+        try (val threads = Threads.elasticPool()) {
+            try ( val bg = threads.background() ) {
+                for (int i = 0; i < 50; i++) {
+                    final int key = i;
+                    bg.run(() -> assertEquals( Integer.valueOf( key * 2 ), cache.get( key ) ));
+                }
+            }
+        }
+
+        assertEquals( 50, bulkLoader.loadedKeys.get() );
+        assertTrue( bulkLoader.batches.size() < 50 );
+    }
+
+    @Test( timeout = 3000 )
+    public void willDispatchTheBatchAsSoonAsItIsFull() throws Exception {
+        final BatchingCacheLoader<Integer, Integer> loader = BatchingCacheLoader.wrap( bulkLoader, ForkJoinPool.commonPool(), 2, 60_000 );
+
+        final CompletableFuture<Integer> first = loader.asyncLoad( 1, ForkJoinPool.commonPool() );
+        final CompletableFuture<Integer> second = loader.asyncLoad( 2, ForkJoinPool.commonPool() );
+
+        assertEquals( Integer.valueOf( 2 ), first.get() );
+        assertEquals( Integer.valueOf( 4 ), second.get() );
+        assertEquals( 1, bulkLoader.batches.size() );
+    }
+
+    @Test( timeout = 3000 )
+    public void willLoadKeysOneByOneWhenLoadAllIsNotImplemented() throws Exception {
+        final CacheLoader<Integer, Integer> singleLoader = k -> k * 3;
+        final BatchingCacheLoader<Integer, Integer> loader = BatchingCacheLoader.wrap( singleLoader, ForkJoinPool.commonPool(), 10, 10 );
+
+        assertEquals( Integer.valueOf( 9 ), loader.load( 3 ) );
+    }
+
+    @Test( timeout = 3000 )
+    public void willLoadKeysOneByOneWhenAnAsyncCacheIsBackedByALoaderWithoutLoadAll() {
+        final CacheLoader<Integer, Integer> singleLoader = k -> k * 3;
+        final AsyncLoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+                .buildAsync( CacheExecutors.failingOnRejection( singleLoader ) );
+
+        final Map<Integer, Integer> values = cache.getAll( Arrays.asList( 1, 2 ) ).join();
+        assertEquals( Integer.valueOf( 3 ), values.get( 1 ) );
+        assertEquals( Integer.valueOf( 6 ), values.get( 2 ) );
+    }
+
+    static class BulkLoader implements CacheLoader<Integer, Integer> {
+
+        final List<Integer> batches = new CopyOnWriteArrayList<>();
+        final AtomicInteger loadedKeys = new AtomicInteger();
+
+        @Override
+        public Integer load( Integer key ) {
+            throw new UnsupportedOperationException( "Only bulk loads are expected" );
+        }
+
+        @Override
+        public Map<Integer, Integer> loadAll( Iterable<? extends Integer> keys ) {
+            final Map<Integer, Integer> values = new HashMap<>();
+            for ( final Integer key : keys )
+                values.put( key, key * 2 );
+            batches.add( values.size() );
+            loadedKeys.addAndGet( values.size() );
+            return values;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import kikaha.core.test.KikahaRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CacheManagement}.
+ */
+@RunWith(KikahaRunner.class)
+public class CacheManagementTest {
+
+    @Named("tunable")
+    @Inject Cache<String, String> tunable;
+
+    @Named("pinned-tunable")
+    @Inject Cache<String, String> pinnedTunable;
+
+    @Inject CacheManagement cacheManagement;
+
+    @Test
+    public void canChangeTheSizingAndExpirationOfLiveCaches(){
+        tunable.put( "key", "value" );
+
+        final CacheManagement.Reconfiguration reconfiguration = cacheManagement.reconfigure( "tunable",
+                new CacheSettings().maximumSize( 500 ).timeAfterAccess( 30, TimeUnit.SECONDS ) );
+
+        assertEquals( Long.valueOf( 50 ), reconfiguration.before.maximumSize );
+        assertEquals( Long.valueOf( TimeUnit.MINUTES.toNanos( 10 ) ), reconfiguration.before.timeAfterAccessInNanos );
+        assertEquals( Long.valueOf( 500 ), reconfiguration.after.maximumSize );
+        assertEquals( Long.valueOf( TimeUnit.SECONDS.toNanos( 30 ) ), reconfiguration.after.timeAfterAccessInNanos );
+        assertEquals( "value", tunable.getIfPresent( "key" ) );
+    }
+
+    @Test
+    public void willRejectSettingsTheCacheWasNotBuiltWith(){
+        final long maximumBefore = cacheManagement.stateOf( "tunable" ).maximumSize;
+        try {
+            cacheManagement.reconfigure( "tunable", new CacheSettings().maximumSize( 1 ).timeAfterWrite( 1, TimeUnit.MINUTES ) );
+            fail( "Caches built without time-after-write should not be tuned with it" );
+        } catch ( IllegalArgumentException expected ) {
+            assertEquals( maximumBefore, (long) cacheManagement.stateOf( "tunable" ).maximumSize );
+        }
+    }
+
+    @Test
+    public void canResizeCachesWhoseHotKeysArePinned(){
+        pinnedTunable.put( "key", "value" );
+
+        final CacheManagement.Reconfiguration reconfiguration = cacheManagement.reconfigure( "pinned-tunable",
+                new CacheSettings().maximumSize( 100 ) );
+
+        assertEquals( Long.valueOf( 50 ), reconfiguration.before.maximumSize );
+        assertNull( reconfiguration.before.maximumWeight );
+        assertEquals( Long.valueOf( 100 ), reconfiguration.after.maximumSize );
+    }
+
+    @Test
+    public void willReadEachTimeInItsOwnUnit(){
+        final Map<String, String> values = new HashMap<>();
+        values.put( "time-after-access", "30" );
+        values.put( "time-after-write", "2" );
+        values.put( "time-after-write-unit", "hours" );
+        values.put( "time-unit", "SECONDS" );
+
+        final CacheSettings settings = CacheSettings.from( values );
+        assertEquals( Long.valueOf( TimeUnit.SECONDS.toNanos( 30 ) ), settings.timeAfterAccessInNanos );
+        assertEquals( Long.valueOf( TimeUnit.HOURS.toNanos( 2 ) ), settings.timeAfterWriteInNanos );
+
+        final CacheSettings built = new CacheSettings().timeAfterAccess( 30, TimeUnit.SECONDS ).timeAfterWrite( 2, TimeUnit.HOURS );
+        assertEquals( settings.timeAfterAccessInNanos, built.timeAfterAccessInNanos );
+        assertEquals( settings.timeAfterWriteInNanos, built.timeAfterWriteInNanos );
+    }
+
+    @Test( expected = NoSuchElementException.class )
+    public void willRejectUnknownCaches(){
+        cacheManagement.reconfigure( "unknown", new CacheSettings().maximumSize( 1 ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void willRejectNegativeValues(){
+        CacheSettings.from( singletonMap( "maximum-size", "-1" ) );
+    }
+}
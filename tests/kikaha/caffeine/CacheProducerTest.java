@@ -0,0 +1,112 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import kikaha.core.test.KikahaRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Map;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CacheProducer}.
+ */
+@RunWith(KikahaRunner.class)
+public class CacheProducerTest {
+
+    @Inject CacheProducer cacheProducer;
+    @Inject WarmedCacheLoader warmedCacheLoader;
+    @Inject MissingKeysAsyncCacheLoader missingKeysLoader;
+
+    @Inject InMemorySecondLevelStore secondLevel;
+
+    @Named("async-negative")
+    @Inject AsyncLoadingCache<String, Integer> asyncNegative;
+
+    @Named("async-near")
+    @Inject AsyncLoadingCache<String, String> asyncNear;
+
+    @Test
+    public void canInitializeEveryConfiguredCacheAtOnce(){
+        cacheProducer.initializeConfiguredCaches();
+
+        final Map<String, Cache> caches = cacheProducer.registeredCaches();
+        assertTrue( caches.get( "configured" ) instanceof LoadingCache );
+        assertNotNull( caches.get( "isolated-async" ) );
+        assertFalse( caches.containsKey( "executors" ) );
+        assertFalse( caches.containsKey( "lazy" ) );
+    }
+
+    @Test( timeout = 3000 )
+    public void willPreloadCachesInBatches(){
+        cacheProducer.warmUpCaches();
+
+        final Cache warmed = cacheProducer.registeredCaches().get( "warmed" );
+        assertEquals( 250, warmed.estimatedSize() );
+        assertEquals( 3, warmedCacheLoader.bulkLoads.get() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void willRejectCacheWritersOnAsyncCaches(){
+        cacheProducer.asyncCacheNamed( "async-with-writer" );
+    }
+
+    @Test
+    public void willShareCachesUsedByNameWithTheLoadingCachesOfTheSameName(){
+        final Cache cache = cacheProducer.cacheNamed( "shared-by-name" );
+        cache.put( "key", "value" );
+
+        final LoadingCache loadingCache = cacheProducer.loadingCacheNamed( "shared-by-name" );
+        assertSame( cache, loadingCache );
+        assertEquals( "value", loadingCache.getIfPresent( "key" ) );
+    }
+
+    @Test
+    public void willRejectUsingACacheAsAnotherType(){
+        final Cache cache = cacheProducer.cacheNamed( "single-typed" );
+        try {
+            cacheProducer.asyncCacheNamed( "single-typed" );
+            fail( "The cache single-typed was built twice, with different types" );
+        } catch ( IllegalStateException expected ) { }
+        assertSame( cache, cacheProducer.registeredCaches().get( "single-typed" ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void willRejectWeakKeysOnCachesWithACacheWriter(){
+        cacheProducer.cacheNamed( "weak-keys-negative" );
+    }
+
+    @Test
+    public void willForgetMissingKeysOfAsyncCachesOnceTheirValuesAreRemoved(){
+        assertNull( asyncNegative.get( "missing" ).join() );
+        assertNull( asyncNegative.get( "missing" ).join() );
+        assertEquals( 1, missingKeysLoader.loads.get() );
+
+        asyncNegative.put( "missing", completedFuture( 10 ) );
+        asyncNegative.synchronous().invalidate( "missing" );
+        assertNull( asyncNegative.get( "missing" ).join() );
+        assertEquals( 2, missingKeysLoader.loads.get() );
+    }
+
+    @Test
+    public void canShareAsyncCachesThroughASecondLevelStore(){
+        asyncNear.put( "1", completedFuture( "written" ) );
+        assertEquals( "written", secondLevel.entries.get( "1" ) );
+
+        secondLevel.entries.put( "2", "stored" );
+        assertEquals( "stored", asyncNear.get( "2" ).join() );
+
+        new LoopbackInvalidationChannel().publish( "async-near", "1" );
+        assertNull( asyncNear.synchronous().getIfPresent( "1" ) );
+        assertEquals( "written", secondLevel.entries.get( "1" ) );
+
+        asyncNear.synchronous().invalidate( "2" );
+        assertNull( secondLevel.entries.get( "2" ) );
+    }
+}
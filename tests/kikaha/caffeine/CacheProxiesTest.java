@@ -0,0 +1,162 @@
+package kikaha.caffeine;
+
+import kikaha.core.test.KikahaRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CacheProxies}.
+ */
+@RunWith(KikahaRunner.class)
+public class CacheProxiesTest {
+
+    @Inject CacheProxies cacheProxies;
+
+    final CountingPriceService target = new CountingPriceService();
+    PriceService service;
+
+    @Before
+    public void createProxy(){
+        service = cacheProxies.proxy( PriceService.class, target );
+        service.forgetAll();
+    }
+
+    @Test
+    public void willCacheMethodResultsByArguments(){
+        assertEquals( 3, (int) service.priceOf( "abc" ) );
+        assertEquals( 3, (int) service.priceOf( "abc" ) );
+        assertEquals( 1, target.calls.get() );
+
+        assertEquals( 6, (int) service.priceOf( "abc", 2 ) );
+        assertEquals( 6, (int) service.priceOf( "abc", 2 ) );
+        assertEquals( 2, target.calls.get() );
+    }
+
+    @Test
+    public void willRefreshAndEvictCachedResults(){
+        service.priceOf( "abc" );
+        target.markup = 10;
+        assertEquals( 13, (int) service.refresh( "abc" ) );
+        assertEquals( 13, (int) service.priceOf( "abc" ) );
+
+        service.forget( "abc" );
+        target.markup = 20;
+        assertEquals( 23, (int) service.priceOf( "abc" ) );
+        assertEquals( 3, target.calls.get() );
+    }
+
+    @Test
+    public void willCacheFuturesOnAsyncCaches() throws Exception {
+        assertEquals( 3, (int) service.asyncPriceOf( "abc" ).get() );
+        assertEquals( 3, (int) service.asyncPriceOf( "abc" ).get() );
+        assertEquals( 1, target.calls.get() );
+    }
+
+    @Test
+    public void willCacheCompletionStagesOnAsyncCaches() throws Exception {
+        assertEquals( 4, (int) service.stagedPriceOf( "abcd" ).toCompletableFuture().get() );
+        assertEquals( 4, (int) service.stagedPriceOf( "abcd" ).toCompletableFuture().get() );
+        assertEquals( 1, target.calls.get() );
+    }
+
+    @Test
+    public void willCacheMethodsReturningObjectOnSyncCaches(){
+        final Object price = service.anyPriceOf( "abc" );
+        assertEquals( 3, price );
+        assertEquals( 3, service.anyPriceOf( "abc" ) );
+        assertEquals( 1, target.calls.get() );
+    }
+
+    @Test( expected = IOException.class )
+    public void willRethrowCheckedExceptions() throws IOException {
+        service.failingPriceOf( "abc" );
+    }
+
+    public interface PriceService {
+
+        @Cached( "prices" )
+        Integer priceOf( String product );
+
+        @Cached( "prices-by-quantity" )
+        Integer priceOf( String product, int quantity );
+
+        @CachePut( "prices" )
+        Integer refresh( String product );
+
+        @CacheEvict( "prices" )
+        void forget( String product );
+
+        @CacheEvict( value = "prices", allEntries = true )
+        void forgetAll();
+
+        @Cached( "async-prices" )
+        CompletableFuture<Integer> asyncPriceOf( String product );
+
+        @Cached( "async-prices" )
+        CompletionStage<Integer> stagedPriceOf( String product );
+
+        @Cached( "prices" )
+        Object anyPriceOf( String product );
+
+        @Cached( "prices" )
+        Integer failingPriceOf( String product ) throws IOException;
+    }
+
+    static class CountingPriceService implements PriceService {
+
+        final AtomicInteger calls = new AtomicInteger();
+        volatile int markup;
+
+        @Override
+        public Integer priceOf( String product ) {
+            calls.incrementAndGet();
+            return product.length() + markup;
+        }
+
+        @Override
+        public Integer priceOf( String product, int quantity ) {
+            return priceOf( product ) * quantity;
+        }
+
+        @Override
+        public Integer refresh( String product ) {
+            return priceOf( product );
+        }
+
+        @Override
+        public void forget( String product ) { }
+
+        @Override
+        public void forgetAll() { }
+
+        @Override
+        public CompletableFuture<Integer> asyncPriceOf( String product ) {
+            return completedFuture( priceOf( product ) );
+        }
+
+        @Override
+        public CompletionStage<Integer> stagedPriceOf( String product ) {
+            return completedFuture( priceOf( product ) );
+        }
+
+        @Override
+        public Object anyPriceOf( String product ) {
+            return priceOf( product );
+        }
+
+        @Override
+        public Integer failingPriceOf( String product ) throws IOException {
+            throw new IOException( "Unavailable" );
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package kikaha.caffeine;
+
+import kikaha.core.util.Threads;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CacheRegistry}.
+ */
+public class CacheRegistryTest {
+
+    final CacheRegistry<Object> registry = new CacheRegistry<>();
+    final AtomicInteger builtCaches = new AtomicInteger();
+
+    @Test( timeout = 3000 )
+    public void willBuildEachCacheOnlyOnceEvenWhenResolvedConcurrently(){
+        try (val threads = Threads.elasticPool()) {
+            try ( val bg = threads.background() ) {
+                for (int i = 0; i < 20; i++)
+                    bg.run(() -> {
+                        for (int j = 0; j < 100; j++)
+                            registry.resolve( "cache-" + (j % 5), this::slowlyBuildCache );
+                    });
+            }
+        }
+
+        assertEquals( 5, builtCaches.get() );
+        assertEquals( 5, registry.asMap().size() );
+    }
+
+    @Test
+    public void canBuildCachesWhileBuildingAnotherOne(){
+        final Object outer = registry.resolve( "outer", n -> registry.resolve( "inner", this::slowlyBuildCache ) );
+        assertSame( outer, registry.asMap().get( "inner" ) );
+    }
+
+    Object slowlyBuildCache( String name ) {
+        builtCaches.incrementAndGet();
+        Thread.yield();
+        return new Object();
+    }
+}
@@ -0,0 +1,31 @@
+package kikaha.caffeine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CacheStatsResource}.
+ */
+public class CacheStatsResourceTest {
+
+    @Test
+    public void willEscapeQuotesBackslashesAndControlCharacters(){
+        assertEquals( "a\\\"b\\\\c\\u000a\\u0000d", CacheStatsResource.escape( "a\"b\\c\n\u0000d" ) );
+    }
+
+    @Test
+    public void willHashKeysWithoutRevealingThem(){
+        final String hash = CacheStatsResource.hashOf( "session-id" );
+        assertEquals( 16, hash.length() );
+        assertFalse( hash.contains( "session" ) );
+        assertEquals( hash, CacheStatsResource.hashOf( "session-id" ) );
+        assertNotEquals( hash, CacheStatsResource.hashOf( "other-session-id" ) );
+    }
+
+    @Test
+    public void willNeverExposeTheKeysOfSessionCaches(){
+        assertTrue( CacheStatsResource.SESSION_CACHES.contains( "session-cache" ) );
+        assertTrue( CacheStatsResource.SESSION_CACHES.contains( "async-session-cache" ) );
+    }
+}
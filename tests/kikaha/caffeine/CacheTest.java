@@ -11,9 +11,15 @@ import org.junit.runner.RunWith;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(KikahaRunner.class)
 public class CacheTest {
@@ -27,7 +33,18 @@ public class CacheTest {
     @Named("configured")
     @Inject LoadingCache<String, Integer> configured;
 
+    @Named("isolated-async")
+    @Inject AsyncLoadingCache<String, String> isolatedAsync;
+
+    @Named("refreshed")
+    @Inject LoadingCache<String, Integer> refreshed;
+
+    @Named("saturated-async")
+    @Inject AsyncLoadingCache<String, String> saturatedAsync;
+
     @Inject NonConfiguredCacheWriter nonConfiguredCacheWriter;
+    @Inject RefreshedCacheLoader refreshedCacheLoader;
+    @Inject SaturatedAsyncCacheLoader saturatedAsyncCacheLoader;
 
     @Before
     public void clear(){
@@ -81,9 +98,58 @@ public class CacheTest {
         assertEquals( 12, computed );
     }
 
+    @Test @SneakyThrows
+    public void willRecordStatsWhenConfiguredTo(){
+        configured.get( "3" );
+        configured.get( "3" );
+
+        assertTrue( configured.stats().hitCount() >= 1 );
+        assertTrue( configured.stats().loadSuccessCount() >= 1 );
+    }
+
     @Test @SneakyThrows
     public void willReadDataFromAsyncCacheLoader(){
         int computed = notConfiguredAsync.get( "2" ).get();
         assertEquals( 22, computed );
     }
+
+    @Test @SneakyThrows
+    public void willRunAsyncLoadsOnTheConfiguredExecutor(){
+        final String threadName = isolatedAsync.get( "1" ).get();
+        assertTrue( threadName, threadName.startsWith( "cache-async-loaders-" ) );
+    }
+
+    @Test( timeout = 3000 ) @SneakyThrows
+    public void willFailLoadsRejectedByASaturatedExecutor(){
+        final List<CompletableFuture<String>> loads = new ArrayList<>();
+        for ( int i = 0; i < 5; i++ )
+            loads.add( saturatedAsync.get( String.valueOf( i ) ) );
+
+        int rejected = 0;
+        for ( final CompletableFuture<String> load : loads )
+            if ( load.isCompletedExceptionally() ) {
+                try {
+                    load.join();
+                } catch ( CompletionException cause ) {
+                    assertTrue( cause.getCause() instanceof RejectedExecutionException );
+                }
+                rejected++;
+            }
+        assertTrue( rejected > 0 );
+
+        saturatedAsyncCacheLoader.release.countDown();
+        assertEquals( "0", loads.get( 0 ).get() );
+    }
+
+    @Test( timeout = 3000 ) @SneakyThrows
+    public void willServeStaleValuesWhileRefreshingThemInBackground(){
+        assertEquals( 1, (int)refreshed.get( "1" ) );
+        Thread.sleep( 100L );
+
+        assertEquals( 1, (int)refreshed.get( "1" ) );
+        while ( refreshedCacheLoader.reloads.get() == 0 )
+            Thread.sleep( 10L );
+        while ( refreshed.get( "1" ) == 1 )
+            Thread.sleep( 10L );
+    }
 }
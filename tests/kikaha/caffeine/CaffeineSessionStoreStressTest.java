@@ -17,6 +17,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(KikahaRunner.class)
 public class CaffeineSessionStoreStressTest {
@@ -52,6 +53,26 @@ public class CaffeineSessionStoreStressTest {
         assertEquals( 10, cacheWithMetrics.counter.get() );
     }
 
+    @Test( timeout = 3000 )
+    public void createDistinctSessionsInParallelWithoutBlockingEachOther()
+    {
+        cacheWithMetrics.writeLatencyInMillis = 100;
+
+        final long start = System.currentTimeMillis();
+        try (val threads = Threads.elasticPool()) {
+            try ( val bg = threads.background() ) {
+                for (int i = 0; i < 10; i++) {
+                    final int n = 100 + i;
+                    bg.run(() -> sessionStore.createOrRetrieveSession( createExchange(n), sessionIdManager ));
+                }
+            }
+        }
+        final long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals( 10, cacheWithMetrics.counter.get() );
+        assertTrue( "Sessions were created sequentially: " + elapsed + "ms", elapsed < 10 * 100 / 2 );
+    }
+
     static HttpServerExchange createExchange(int n ){
         final HttpServerExchange exchange = HttpServerExchangeStub.createHttpExchange();
         exchange.getRequestHeaders().put( Headers.COOKIE, "JSESSIONID=" + n );
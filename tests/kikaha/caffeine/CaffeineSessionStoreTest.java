@@ -12,6 +12,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -81,6 +83,106 @@ public class CaffeineSessionStoreTest {
         assertEquals( "b", found.getAttribute( "a" ) );
     }
 
+    @Test
+    public void flushWillOnlyStoreChangedSessions() throws Exception {
+        final Session session = sessionStore.createOrRetrieveSession( createExchange(), sessionIdManager );
+        final LoadingCacheWithCounter cacheWithMetrics = new LoadingCacheWithCounter( sessionStore.sessionCache );
+        sessionStore.sessionCache = cacheWithMetrics;
+        sessionStore.flushMode = SessionFlushMode.CHANGED;
+        try {
+            sessionStore.flush( session );
+            assertEquals( 0, cacheWithMetrics.counter.get() );
+
+            session.setAttribute( "a", "b" );
+            sessionStore.flush( session );
+            sessionStore.flush( session );
+            assertEquals( 1, cacheWithMetrics.counter.get() );
+        } finally {
+            sessionStore.sessionCache = cacheWithMetrics.target;
+            sessionStore.flushMode = SessionFlushMode.ALWAYS;
+        }
+    }
+
+    @Test
+    public void flushWillStoreEverySessionByDefault() throws Exception {
+        final Session session = sessionStore.createOrRetrieveSession( createExchange(), sessionIdManager );
+        final LoadingCacheWithCounter cacheWithMetrics = new LoadingCacheWithCounter( sessionStore.sessionCache );
+        sessionStore.sessionCache = cacheWithMetrics;
+        try {
+            sessionStore.flush( session );
+            sessionStore.flush( session );
+            assertEquals( 2, cacheWithMetrics.counter.get() );
+        } finally {
+            sessionStore.sessionCache = cacheWithMetrics.target;
+        }
+    }
+
+    @Test
+    public void canStoreSessionsSerialized() throws Exception {
+        sessionStore.compactSessions = sessionStore.compressSessions = true;
+        try {
+            final Session session = sessionStore.createOrRetrieveSession( createExchange(), sessionIdManager );
+            session.setAttribute( "a", "b" );
+            sessionStore.flush( session );
+
+            assertTrue( sessionStore.sessionCache.getIfPresent( SESSION_ID ) instanceof CompactSession );
+            final Session found = sessionStore.createOrRetrieveSession( createExchange(), sessionIdManager );
+            assertNotSame( session, found );
+            assertEquals( "b", found.getAttribute( "a" ) );
+        } finally {
+            sessionStore.compactSessions = sessionStore.compressSessions = false;
+        }
+    }
+
+    @Test
+    public void canInvalidateEverySessionOfAPrincipal(){
+        sessionStore.storeSession( "1", SessionIndexTest.authenticated( "1" ) );
+        sessionStore.storeSession( "2", SessionIndexTest.authenticated( "2" ) );
+        sessionStore.storeSession( "3", new DefaultSession( "3" ) );
+        assertEquals( 2, sessionStore.countSessionsOf( "user" ) );
+
+        assertEquals( 2, sessionStore.invalidateSessionsOf( "user" ) );
+        assertEquals( 0, sessionStore.countSessionsOf( "user" ) );
+        assertNull( sessionStore.sessionCache.getIfPresent( "1" ) );
+        assertNull( sessionStore.sessionCache.getIfPresent( "2" ) );
+        assertNotNull( sessionStore.sessionCache.getIfPresent( "3" ) );
+    }
+
+    @Test( timeout = 3000 )
+    public void willUnindexSessionsRemovedFromTheCache() throws Exception {
+        sessionStore.storeSession( "1", SessionIndexTest.authenticated( "1" ) );
+        assertTrue( sessionStore.countSessionsOf( "user" ) > 0 );
+
+        sessionStore.sessionCache.invalidateAll();
+        while ( sessionStore.countSessionsOf( "user" ) > 0 )
+            Thread.sleep( 10 );
+    }
+
+    @Test
+    public void willRestoreOnlyLiveSessionsMissingFromTheCache(){
+        final Session existing = new DefaultSession( "3" );
+        sessionStore.storeSession( "3", existing );
+
+        final long now = System.currentTimeMillis();
+        final List<SessionSnapshot.Record> records = Arrays.asList(
+            restored( SessionIndexTest.authenticated( "1" ), now + 60000 ),
+            restored( SessionIndexTest.authenticated( "2" ), now - 1 ),
+            restored( new DefaultSession( "3" ), SessionSnapshot.NEVER_EXPIRES ) );
+
+        assertEquals( 1, sessionStore.restore( records ) );
+        assertNotNull( sessionStore.sessionCache.getIfPresent( "1" ) );
+        assertNull( sessionStore.sessionCache.getIfPresent( "2" ) );
+        assertSame( existing, sessionStore.sessionCache.getIfPresent( "3" ) );
+        assertEquals( 1, sessionStore.countSessionsOf( "user" ) );
+        sessionStore.invalidateSessionsOf( "user" );
+    }
+
+    static SessionSnapshot.Record restored( Session session, long expiresAt ) {
+        final SessionSnapshot.Record record = new SessionSnapshot.Record( session.getId(), expiresAt, new byte[0] );
+        record.session = session;
+        return record;
+    }
+
     @Test
     public void getSessionFromCache() throws Exception {
         assertNull(MSG_NO_SESSION_REQUIRED_BEFORE_CREATION, sessionStore.sessionCache.getIfPresent( SESSION_ID ) );
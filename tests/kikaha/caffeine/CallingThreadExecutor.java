@@ -0,0 +1,17 @@
+package kikaha.caffeine;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks on the calling thread, so removal listeners of asynchronous caches run before the removal returns.
+ */
+@Singleton @Named("calling-thread")
+public class CallingThreadExecutor implements Executor {
+
+    @Override
+    public void execute(Runnable command) {
+        command.run();
+    }
+}
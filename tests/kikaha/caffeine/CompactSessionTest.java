@@ -0,0 +1,48 @@
+package kikaha.caffeine;
+
+import kikaha.core.modules.security.DefaultSession;
+import kikaha.core.modules.security.Session;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CompactSession}.
+ */
+public class CompactSessionTest {
+
+    final Session session = createSession();
+
+    @Test
+    public void canInflateSerializedSessions(){
+        final CompactSession compact = CompactSession.of( session, false );
+        assertNotNull( compact );
+
+        final Session inflated = compact.inflate();
+        assertNotSame( session, inflated );
+        assertEquals( "value-99", inflated.getAttribute( "attribute-99" ) );
+    }
+
+    @Test
+    public void canInflateCompressedSessions(){
+        final CompactSession serialized = CompactSession.of( session, false );
+        final CompactSession compressed = CompactSession.of( session, true );
+
+        assertTrue( compressed.bytes.length < serialized.bytes.length );
+        assertEquals( "value-42", compressed.inflate().getAttribute( "attribute-42" ) );
+    }
+
+    @Test
+    public void canReadTheIdAndAuthenticationWithoutInflating(){
+        final CompactSession compact = CompactSession.of( session, true );
+        assertEquals( "compact", compact.getId() );
+        assertFalse( compact.authenticated );
+    }
+
+    static Session createSession(){
+        final Session session = new DefaultSession( "compact" );
+        for ( int i = 0; i < 100; i++ )
+            session.setAttribute( "attribute-" + i, "value-" + i );
+        return session;
+    }
+}
@@ -0,0 +1,105 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static kikaha.caffeine.AccessTrace.Event.READ;
+import static kikaha.caffeine.AccessTrace.Event.WRITE;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link HotKeyTracker}.
+ */
+public class HotKeyTrackerTest {
+
+    HotKeyTracker tracker;
+
+    @After
+    public void stopTracking(){
+        tracker.close();
+    }
+
+    @Test
+    public void willReportTheMostReadKeysFirst(){
+        tracker = new HotKeyTracker( 2, 1, false );
+        for ( int i = 0; i < 1000; i++ ) {
+            tracker.record( READ, "hot" );
+            if ( i % 2 == 0 ) tracker.record( READ, "warm" );
+            if ( i % 100 == 0 ) tracker.record( READ, "cold-" + i );
+            drainEvery( 500, i );
+        }
+        tracker.drain();
+
+        final List<HotKeyTracker.HotKey> hotKeys = tracker.hotKeys();
+        assertEquals( 2, hotKeys.size() );
+        assertEquals( "hot", hotKeys.get( 0 ).key );
+        assertEquals( "warm", hotKeys.get( 1 ).key );
+        assertTrue( hotKeys.get( 0 ).count >= 1000 );
+    }
+
+    @Test
+    public void willOnlyCountReads(){
+        tracker = new HotKeyTracker( 2, 1, false );
+        tracker.record( WRITE, "written" );
+        tracker.drain();
+        assertTrue( tracker.hotKeys().isEmpty() );
+    }
+
+    @Test
+    public void willNotEvictPinnedKeysBySize(){
+        tracker = new HotKeyTracker( 1, 1, true );
+        final Cache<String, String> cache = Caffeine.newBuilder().executor( Runnable::run )
+                .maximumWeight( 10 ).weigher( tracker.excludingPinnedKeys( (key, value) -> 1 ) ).build();
+        tracker.attach( cache );
+
+        cache.put( "hot", "value" );
+        for ( int i = 0; i < 10; i++ )
+            tracker.record( READ, "hot" );
+        tracker.drain();
+        assertTrue( tracker.pinned.contains( "hot" ) );
+
+        for ( int i = 0; i < 100; i++ )
+            cache.put( String.valueOf( i ), "value" );
+        cache.cleanUp();
+        assertEquals( "value", cache.getIfPresent( "hot" ) );
+    }
+
+    @Test
+    public void willNotHitTheCacheWriterWhenWeighingPinnedEntriesAgain(){
+        tracker = new HotKeyTracker( 1, 1, true );
+        final AtomicInteger writes = new AtomicInteger();
+        final Cache<String, String> cache = Caffeine.newBuilder().executor( Runnable::run )
+                .maximumWeight( 10 ).weigher( tracker.excludingPinnedKeys( (key, value) -> 1 ) )
+                .writer( tracker.skippingReweighs( new CacheWriter<Object, Object>() {
+                    @Override
+                    public void write( Object key, Object value ) {
+                        writes.incrementAndGet();
+                    }
+
+                    @Override
+                    public void delete( Object key, Object value, RemovalCause cause ) {
+                    }
+                })).build();
+        tracker.attach( cache );
+
+        cache.put( "hot", "value" );
+        for ( int i = 0; i < 10; i++ )
+            tracker.record( READ, "hot" );
+        tracker.drain();
+
+        assertTrue( tracker.pinned.contains( "hot" ) );
+        assertEquals( 1, writes.get() );
+    }
+
+    void drainEvery( int events, int i ){
+        if ( i % events == 0 )
+            tracker.drain();
+    }
+}
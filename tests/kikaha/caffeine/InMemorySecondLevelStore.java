@@ -0,0 +1,30 @@
+package kikaha.caffeine;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the {@code async-near} cache into a near-cache over an in-memory map.
+ */
+@Singleton @Named("async-near")
+public class InMemorySecondLevelStore implements SecondLevelStore<String, String> {
+
+    final Map<String, String> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public String get(String key) {
+        return entries.get( key );
+    }
+
+    @Override
+    public void put(String key, String value) {
+        entries.put( key, value );
+    }
+
+    @Override
+    public void remove(String key) {
+        entries.remove( key );
+    }
+}
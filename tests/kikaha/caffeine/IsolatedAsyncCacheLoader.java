@@ -0,0 +1,20 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads the name of the thread the load ran on.
+ */
+@Singleton @Named("isolated-async")
+public class IsolatedAsyncCacheLoader implements AsyncCacheLoader<String, String> {
+
+    @Override
+    public CompletableFuture<String> asyncLoad(String key, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor);
+    }
+}
@@ -0,0 +1,42 @@
+package kikaha.caffeine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void willReportZeroWhenNothingWasRecorded(){
+        assertEquals( 0, histogram.count() );
+        assertEquals( 0, histogram.percentile( 0.99 ) );
+    }
+
+    @Test
+    public void willReportPercentilesWithinTheBucketPrecision(){
+        for ( long i = 1; i <= 10_000; i++ )
+            histogram.record( i * 1000 );
+
+        assertEquals( 10_000, histogram.count() );
+        assertWithinPrecision( 5_000_000, histogram.percentile( 0.5 ) );
+        assertWithinPrecision( 9_900_000, histogram.percentile( 0.99 ) );
+        assertEquals( 10_000_000, histogram.percentile( 1 ) );
+    }
+
+    @Test
+    public void everyBucketBoundContainsItsValues(){
+        for ( long value : new long[]{ 0, 1, 7, 8, 9, 15, 16, 1023, 1024, 123_456_789, Long.MAX_VALUE } ) {
+            final int index = LatencyHistogram.indexOf( value );
+            assertTrue( value + " should fit bucket " + index, value <= LatencyHistogram.upperBoundOf( index ) );
+        }
+    }
+
+    static void assertWithinPrecision( long expected, long actual ) {
+        assertTrue( actual + " is too far from " + expected, Math.abs( actual - expected ) <= expected / 8 );
+    }
+}
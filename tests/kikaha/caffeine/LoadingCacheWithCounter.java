@@ -5,6 +5,7 @@ import com.github.benmanes.caffeine.cache.Policy;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import kikaha.core.modules.security.Session;
 import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
@@ -18,6 +19,8 @@ class LoadingCacheWithCounter implements LoadingCache<String, Session> {
 
     final LoadingCache<String, Session> target;
 
+    volatile long writeLatencyInMillis;
+
     @Override
     public Session getIfPresent(Object key) {
         return null;
@@ -33,8 +36,11 @@ class LoadingCacheWithCounter implements LoadingCache<String, Session> {
         return null;
     }
 
+    @SneakyThrows
     public void put(String k, Session v ) {
         counter.incrementAndGet();
+        if ( writeLatencyInMillis > 0 )
+            Thread.sleep( writeLatencyInMillis );
         target.put(k, v);
     }
 
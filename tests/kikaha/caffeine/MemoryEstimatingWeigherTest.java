@@ -0,0 +1,107 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import kikaha.core.modules.security.DefaultSession;
+import kikaha.core.modules.security.Session;
+import kikaha.core.test.KikahaRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link MemoryEstimatingWeigher}.
+ */
+@RunWith(KikahaRunner.class)
+public class MemoryEstimatingWeigherTest {
+
+    final MemoryEstimatingWeigher weigher = new MemoryEstimatingWeigher();
+
+    @Named("weighted")
+    @Inject Cache<String, String> weighted;
+
+    @Inject CacheProducer cacheProducer;
+
+    @Test
+    public void willWeighSessionsByTheirAttributes(){
+        final Session empty = new DefaultSession( "1" );
+        final Session loaded = new DefaultSession( "2" );
+        final List<String> items = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ )
+            items.add( "item-" + i );
+        loaded.setAttribute( "items", items );
+
+        final long emptySize = weigher.estimate( empty ), loadedSize = weigher.estimate( loaded );
+        assertTrue( emptySize > 0 );
+        assertTrue( loadedSize - emptySize >= 100 * 40 );
+    }
+
+    @Test
+    public void willCountSharedObjectsOnlyOnce(){
+        final String shared = "a shared string with quite a few characters";
+        final List<String> sharing = new ArrayList<>(), copying = new ArrayList<>();
+        for ( int i = 0; i < 10; i++ ) {
+            sharing.add( shared );
+            copying.add( new String( shared ) );
+        }
+
+        final long sizeOfCopies = weigher.estimate( shared ) * 9;
+        assertEquals( weigher.estimate( copying ) - sizeOfCopies, weigher.estimate( sharing ) );
+    }
+
+    @Test
+    public void willSkipTheElementsOfCollectionsModifiedWhileBeingWalked(){
+        final List<String> items = new ArrayList<String>() {
+            @Override
+            public void forEach( Consumer<? super String> action ) {
+                throw new ConcurrentModificationException();
+            }
+        };
+        items.add( "item" );
+        assertTrue( weigher.estimate( Collections.unmodifiableList( items ) ) > 0 );
+    }
+
+    @Test
+    public void willStopWalkingDeepObjectGraphs(){
+        final int depth = MemoryEstimatingWeigher.MAX_DEPTH;
+        assertTrue( weigher.estimate( nestedLists( depth ) ) < weigher.estimate( nestedLists( depth + 2 ) ) );
+        assertEquals( weigher.estimate( nestedLists( depth + 2 ) ), weigher.estimate( nestedLists( depth * 2 ) ) );
+    }
+
+    static List<Object> nestedLists( int levels ) {
+        final List<Object> root = new ArrayList<>();
+        List<Object> last = root;
+        for ( int i = 1; i < levels; i++ ) {
+            final List<Object> next = new ArrayList<>();
+            last.add( next );
+            last = next;
+        }
+        return root;
+    }
+
+    @Test
+    public void willEstimateEntrySizesOnlyWhenConfiguredTo(){
+        assertNotNull( cacheProducer.cacheNamed( "estimated" ) );
+        try {
+            cacheProducer.cacheNamed( "unweighed" );
+            fail( "A cache bounded by weight was built without a Weigher" );
+        } catch ( IllegalArgumentException expected ) { }
+    }
+
+    @Test
+    public void willBoundCachesByTheWeightOfTheNamedWeigher(){
+        for ( int i = 0; i < 100; i++ )
+            weighted.put( String.valueOf( i ), "0123456789012345678901234567890123456789012345678901234567890123456789012345678901234567890123456789" );
+        weighted.cleanUp();
+
+        assertTrue( weighted.estimatedSize() <= 10 );
+    }
+}
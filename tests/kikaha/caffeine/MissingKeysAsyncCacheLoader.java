@@ -0,0 +1,24 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts its loads and never finds any key.
+ */
+@Singleton @Named("async-negative")
+public class MissingKeysAsyncCacheLoader implements AsyncCacheLoader<String, Integer> {
+
+    final AtomicInteger loads = new AtomicInteger();
+
+    @Override
+    public CompletableFuture<Integer> asyncLoad(String key, Executor executor) {
+        loads.incrementAndGet();
+        return CompletableFuture.completedFuture( null );
+    }
+}
@@ -0,0 +1,100 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.SneakyThrows;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link NearCache}, simulating two nodes that share a {@link FileSecondLevelStore}.
+ */
+@SuppressWarnings("unchecked")
+public class NearCacheTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    final LoopbackInvalidationChannel.Bus bus = new LoopbackInvalidationChannel.Bus();
+    final AtomicInteger loads = new AtomicInteger();
+    final CacheLoader<String, String> loader = key -> {
+        loads.incrementAndGet();
+        return key.startsWith( "missing" ) ? null : "loaded-" + key;
+    };
+
+    @Test @SneakyThrows
+    public void willReadMissesFromTheSecondLevel(){
+        final FileSecondLevelStore<String, String> store = new FileSecondLevelStore<>( folder.getRoot().toPath() );
+        final LoadingCache<String, String> first = newNode( store ), second = newNode( store );
+
+        assertEquals( "loaded-1", first.get( "1" ) );
+        assertEquals( "loaded-1", second.get( "1" ) );
+        assertEquals( 1, loads.get() );
+
+        first.put( "2", "written" );
+        assertEquals( "written", second.get( "2" ) );
+        assertEquals( 1, loads.get() );
+    }
+
+    @Test @SneakyThrows
+    public void willInvalidateStaleCopiesOnOtherNodes(){
+        final FileSecondLevelStore<String, String> store = new FileSecondLevelStore<>( folder.getRoot().toPath() );
+        final LoadingCache<String, String> first = newNode( store ), second = newNode( store );
+
+        first.put( "1", "old" );
+        assertEquals( "old", second.get( "1" ) );
+
+        first.put( "1", "new" );
+        assertNull( second.getIfPresent( "1" ) );
+        assertEquals( "new", second.get( "1" ) );
+
+        second.invalidate( "1" );
+        assertNull( first.getIfPresent( "1" ) );
+        assertNull( store.get( "1" ) );
+    }
+
+    @Test @SneakyThrows
+    public void willKeepSecondLevelEntriesWhenTheyAreEvictedLocally(){
+        final FileSecondLevelStore<String, String> store = new FileSecondLevelStore<>( folder.getRoot().toPath() );
+        final LoadingCache<String, String> node = newNode( store );
+
+        node.getAll( asList( "1", "2", "missing" ) );
+        node.policy().eviction().get().setMaximum( 0 );
+        node.cleanUp();
+
+        assertEquals( 0, node.estimatedSize() );
+        assertEquals( "loaded-2", store.get( "2" ) );
+        assertNull( store.get( "missing" ) );
+    }
+
+    @Test @SneakyThrows
+    public void willKeepKeysWithTheSameHashCodeApartOnTheSecondLevel(){
+        final FileSecondLevelStore<String, String> store = new FileSecondLevelStore<>( folder.getRoot().toPath() );
+        assertEquals( "Aa".hashCode(), "BB".hashCode() );
+
+        store.put( "Aa", "first" );
+        store.put( "BB", "second" );
+        assertEquals( "first", store.get( "Aa" ) );
+        assertEquals( "second", store.get( "BB" ) );
+
+        store.remove( "Aa" );
+        assertNull( store.get( "Aa" ) );
+        assertEquals( "second", store.get( "BB" ) );
+    }
+
+    LoadingCache<String, String> newNode( FileSecondLevelStore<String, String> store ){
+        final NearCache nearCache = new NearCache( "near", store, new LoopbackInvalidationChannel( bus ) );
+        final LoadingCache<String, String> cache = Caffeine.newBuilder()
+                .maximumSize( 100 ).executor( Runnable::run )
+                .writer( nearCache.writer( null ) )
+                .build( nearCache.loader( loader ) );
+        nearCache.listen( cache );
+        return cache;
+    }
+}
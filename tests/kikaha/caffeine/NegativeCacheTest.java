@@ -0,0 +1,70 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link NegativeCache}.
+ */
+@SuppressWarnings("unchecked")
+public class NegativeCacheTest {
+
+    final NegativeCache negativeCache = new NegativeCache( 1, TimeUnit.MINUTES, 100 );
+    final AtomicInteger loads = new AtomicInteger();
+    final CacheLoader<String, Integer> loader = key -> {
+        loads.incrementAndGet();
+        return key.startsWith( "missing" ) ? null : Integer.valueOf( key );
+    };
+
+    final LoadingCache<String, Integer> cache = Caffeine.newBuilder()
+            .writer( negativeCache.writer( null ) )
+            .build( negativeCache.loader( loader ) );
+
+    @Test
+    public void willNotHitTheLoaderAgainForMissingKeys(){
+        assertNull( cache.get( "missing" ) );
+        assertNull( cache.get( "missing" ) );
+        assertEquals( 1, loads.get() );
+
+        assertEquals( Integer.valueOf( 1 ), cache.get( "1" ) );
+        assertEquals( 2, loads.get() );
+    }
+
+    @Test
+    public void willForgetMissingKeysOnceAValueIsWrittenForThem(){
+        assertNull( cache.get( "missing" ) );
+        cache.put( "missing", 10 );
+        cache.invalidate( "missing" );
+
+        assertNull( cache.get( "missing" ) );
+        assertEquals( 2, loads.get() );
+    }
+
+    @Test
+    public void willSkipMissingKeysOnBulkLoads(){
+        assertNull( cache.get( "missing-1" ) );
+        cache.getAll( asList( "missing-1", "missing-2", "3" ) );
+        cache.getAll( asList( "missing-1", "missing-2" ) );
+
+        assertEquals( 3, loads.get() );
+    }
+
+    @Test
+    public void willRememberMissingKeysOnAsyncLoads() throws Exception {
+        final AsyncLoadingCache<String, Integer> asyncCache = Caffeine.newBuilder()
+                .buildAsync( negativeCache.asyncLoader( loader ) );
+
+        assertNull( asyncCache.get( "missing" ).get() );
+        assertNull( asyncCache.get( "missing" ).get() );
+        assertEquals( 1, loads.get() );
+    }
+}
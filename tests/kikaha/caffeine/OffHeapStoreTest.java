@@ -0,0 +1,87 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import kikaha.core.test.KikahaRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link OffHeapStore}.
+ */
+@RunWith(KikahaRunner.class)
+public class OffHeapStoreTest {
+
+    @Named("off-heap-overflow")
+    @Inject LoadingCache<String, Integer> overflowed;
+
+    @Named("async-off-heap-overflow")
+    @Inject AsyncLoadingCache<String, Integer> asyncOverflowed;
+
+    @Test
+    public void canReadBackStoredEntriesOnlyOnce(){
+        final OffHeapStore store = new OffHeapStore( 1 << 16 );
+        store.put( "a", 1 );
+        store.put( "b", "value" );
+
+        assertEquals( 1, store.remove( "a" ) );
+        assertEquals( "value", store.remove( "b" ) );
+        assertNull( store.remove( "a" ) );
+        assertEquals( 0, store.estimatedSize() );
+    }
+
+    @Test
+    public void willOverwriteTheOldestEntriesWhenSegmentsAreFull(){
+        final OffHeapStore store = new OffHeapStore( OffHeapStore.MIN_SEGMENTS * 1024 );
+        for ( int i = 0; i < 10_000; i++ )
+            store.put( i, i );
+
+        assertTrue( store.estimatedSize() < 10_000 );
+        assertEquals( 9_999, store.remove( 9_999 ) );
+    }
+
+    @Test
+    public void willPromoteEntriesEvictedBySizeBackToTheCache(){
+        for ( int i = 0; i < 100; i++ )
+            overflowed.put( String.valueOf( i ), i );
+        overflowed.cleanUp();
+        assertTrue( overflowed.estimatedSize() <= 10 );
+
+        for ( int i = 0; i < 100; i++ )
+            assertEquals( Integer.valueOf( i ), overflowed.get( String.valueOf( i ) ) );
+    }
+
+    @Test
+    public void willPromoteEntriesEvictedBySizeOnBulkLoads(){
+        final List<String> keys = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ ) {
+            keys.add( "bulk-" + i );
+            overflowed.put( "bulk-" + i, i );
+        }
+        overflowed.cleanUp();
+
+        final Map<String, Integer> loaded = overflowed.getAll( keys );
+        for ( int i = 0; i < 100; i++ )
+            assertEquals( Integer.valueOf( i ), loaded.get( "bulk-" + i ) );
+    }
+
+    @Test
+    public void willPromoteEntriesEvictedBySizeBackToAnAsyncCache(){
+        for ( int i = 0; i < 100; i++ )
+            asyncOverflowed.put( String.valueOf( i ), completedFuture( i ) );
+        asyncOverflowed.synchronous().cleanUp();
+        assertTrue( asyncOverflowed.synchronous().estimatedSize() <= 10 );
+
+        for ( int i = 0; i < 100; i++ )
+            assertEquals( Integer.valueOf( i ), asyncOverflowed.get( String.valueOf( i ) ).join() );
+    }
+}
@@ -0,0 +1,24 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Singleton @Named("refreshed")
+public class RefreshedCacheLoader implements CacheLoader<String, Integer> {
+
+    final AtomicInteger reloads = new AtomicInteger();
+
+    @Override
+    public Integer load(String s) throws Exception {
+        return Integer.valueOf( s );
+    }
+
+    @Override
+    public Integer reload(String key, Integer oldValue) throws Exception {
+        reloads.incrementAndGet();
+        return oldValue + 1;
+    }
+}
@@ -0,0 +1,30 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads the keys themselves, but only once {@link #release} is counted down.
+ */
+@Singleton @Named("saturated-async")
+public class SaturatedAsyncCacheLoader implements AsyncCacheLoader<String, String> {
+
+    final CountDownLatch release = new CountDownLatch( 1 );
+
+    @Override
+    public CompletableFuture<String> asyncLoad(String key, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                release.await();
+            } catch ( InterruptedException cause ) {
+                Thread.currentThread().interrupt();
+            }
+            return key;
+        }, executor);
+    }
+}
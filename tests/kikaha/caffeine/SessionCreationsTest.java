@@ -0,0 +1,71 @@
+package kikaha.caffeine;
+
+import kikaha.core.modules.security.DefaultSession;
+import kikaha.core.modules.security.Session;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SessionCreations}.
+ */
+public class SessionCreationsTest {
+
+    final SessionCreations creations = new SessionCreations();
+
+    @Test( timeout = 3000 )
+    public void willCreateEachSessionOnceForConcurrentCallers() throws Exception {
+        final CountDownLatch creating = new CountDownLatch( 1 ), release = new CountDownLatch( 1 );
+        final AtomicInteger created = new AtomicInteger();
+        final Callable<Session> create = () -> creations.createOnce( "1", () -> {
+            created.incrementAndGet();
+            creating.countDown();
+            await( release );
+            return new DefaultSession( "1" );
+        });
+
+        final ExecutorService threads = Executors.newFixedThreadPool( 2 );
+        try {
+            final Future<Session> first = threads.submit( create );
+            creating.await();
+            final Future<Session> second = threads.submit( create );
+            Thread.sleep( 50 );
+            release.countDown();
+
+            assertSame( first.get(), second.get() );
+            assertEquals( 1, created.get() );
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test( timeout = 3000 )
+    public void letsCreatorsCreateOtherSessions(){
+        final Session session = creations.createOnce( "1", () -> {
+            creations.createOnce( "2", () -> new DefaultSession( "2" ) );
+            return new DefaultSession( "1" );
+        });
+        assertEquals( "1", session.getId() );
+    }
+
+    @Test
+    public void willLetTheNextCallerRetryFailedCreations(){
+        try {
+            creations.createOnce( "1", () -> { throw new IllegalStateException( "Unavailable" ); } );
+            fail( "The creation should have failed" );
+        } catch ( IllegalStateException expected ) { }
+
+        assertEquals( "1", creations.createOnce( "1", () -> new DefaultSession( "1" ) ).getId() );
+    }
+
+    static void await( CountDownLatch latch ) {
+        try {
+            latch.await();
+        } catch ( InterruptedException cause ) {
+            throw new IllegalStateException( cause );
+        }
+    }
+}
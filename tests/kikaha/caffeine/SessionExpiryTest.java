@@ -0,0 +1,54 @@
+package kikaha.caffeine;
+
+import io.undertow.security.idm.Account;
+import kikaha.core.modules.security.DefaultSession;
+import kikaha.core.modules.security.Session;
+import org.junit.Test;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link SessionExpiry}.
+ */
+public class SessionExpiryTest {
+
+    final SessionExpiry expiry = new SessionExpiry( 10, 1000 );
+
+    @Test
+    public void willExpireAnonymousSessionsSooner(){
+        final Session session = new DefaultSession( "anonymous" );
+        assertEquals( 10, expiry.expireAfterCreate( session.getId(), session, 0 ) );
+        assertEquals( 10, expiry.expireAfterRead( session.getId(), session, 0, 10 ) );
+    }
+
+    @Test
+    public void willRecalculateTheExpirationOnceTheSessionIsAuthenticated(){
+        final Session session = new DefaultSession( "authenticated" );
+        assertEquals( 10, expiry.expireAfterCreate( session.getId(), session, 0 ) );
+
+        session.setAuthenticatedAccount( new FixedAccount() );
+        assertEquals( 1000, expiry.expireAfterUpdate( session.getId(), session, 0, 10 ) );
+    }
+
+    @Test
+    public void willHandleOtherValuesAsAuthenticatedSessions(){
+        assertEquals( 1000, expiry.expireAfterCreate( "key", "value", 0 ) );
+    }
+
+    static class FixedAccount implements Account {
+
+        @Override
+        public Principal getPrincipal() {
+            return () -> "user";
+        }
+
+        @Override
+        public Set<String> getRoles() {
+            return Collections.emptySet();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import kikaha.core.modules.security.DefaultSession;
+import kikaha.core.modules.security.Session;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SessionIndex}.
+ */
+public class SessionIndexTest {
+
+    final SessionIndex index = new SessionIndex();
+
+    @Test
+    public void willIndexOnlyAuthenticatedSessions(){
+        final Session anonymous = new DefaultSession( "1" ), authenticated = authenticated( "2" );
+        index.index( "1", anonymous, anonymous );
+        index.index( "2", authenticated, authenticated );
+
+        assertEquals( 1, index.countSessionsOf( "user" ) );
+        assertTrue( index.sessionIdsOf( "user" ).contains( "2" ) );
+    }
+
+    @Test
+    public void willForgetSessionsOnceTheyLogout(){
+        final Session session = authenticated( "1" );
+        index.index( "1", session, session );
+
+        session.setAuthenticatedAccount( null );
+        index.index( "1", session, session );
+        assertEquals( 0, index.countSessionsOf( "user" ) );
+    }
+
+    @Test
+    public void willForgetEvictedSessions(){
+        final Session session = authenticated( "1" );
+        index.index( "1", session, session );
+
+        index.onRemoval( "1", session, RemovalCause.EXPIRED );
+        assertEquals( 0, index.countSessionsOf( "user" ) );
+    }
+
+    @Test
+    public void willIgnoreTheRemovalOfValuesReplacedInTheMeantime(){
+        final Session evicted = authenticated( "1" ), storedAgain = authenticated( "1" );
+        index.index( "1", evicted, evicted );
+        index.index( "1", storedAgain, storedAgain );
+
+        index.onRemoval( "1", evicted, RemovalCause.SIZE );
+        index.onRemoval( "1", storedAgain, RemovalCause.REPLACED );
+        assertEquals( 1, index.countSessionsOf( "user" ) );
+    }
+
+    static Session authenticated( String id ){
+        final Session session = new DefaultSession( id );
+        session.setAuthenticatedAccount( new SessionExpiryTest.FixedAccount() );
+        return session;
+    }
+}
@@ -0,0 +1,63 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import kikaha.core.modules.security.DefaultSession;
+import kikaha.core.modules.security.Session;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SessionSnapshot}.
+ */
+public class SessionSnapshotTest {
+
+    final Path file = createSnapshotFile();
+    final SessionSnapshot snapshot = new SessionSnapshot( file );
+
+    @After
+    public void removeSnapshotFile() throws Exception {
+        Files.deleteIfExists( file );
+    }
+
+    @Test
+    public void canReadTheSessionsItHasWritten() throws Exception {
+        final LoadingCache<String, Session> cache = Caffeine.newBuilder()
+                .expireAfterAccess( 1, TimeUnit.HOURS ).build( k -> null );
+        for ( int i = 0; i < 100; i++ ) {
+            final Session session = new DefaultSession( String.valueOf( i ) );
+            session.setAttribute( "n", i );
+            cache.put( session.getId(), session );
+        }
+
+        assertEquals( 100, snapshot.write( cache ) );
+
+        final List<SessionSnapshot.Record> restored = snapshot.readRecords();
+        assertEquals( 100, restored.size() );
+        for ( final SessionSnapshot.Record record : restored ) {
+            assertEquals( Integer.valueOf( record.id ), record.session.getAttribute( "n" ) );
+            assertTrue( record.remainingTimeToLive( System.currentTimeMillis() ) > 0 );
+        }
+    }
+
+    @Test
+    public void willReadNothingWhenThereIsNoSnapshot() throws Exception {
+        Files.deleteIfExists( file );
+        assertTrue( snapshot.readRecords().isEmpty() );
+    }
+
+    static Path createSnapshotFile() {
+        try {
+            return Files.createTempFile( "session-cache", ".snapshot" );
+        } catch ( Exception cause ) {
+            throw new IllegalStateException( cause );
+        }
+    }
+}
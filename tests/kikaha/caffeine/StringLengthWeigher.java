@@ -0,0 +1,15 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+@Singleton @Named("weighted")
+public class StringLengthWeigher implements Weigher<String, String> {
+
+    @Override
+    public int weigh(String key, String value) {
+        return value.length();
+    }
+}
@@ -0,0 +1,29 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Singleton @Named("warmed")
+public class WarmedCacheLoader implements CacheLoader<String, Integer> {
+
+    final AtomicInteger bulkLoads = new AtomicInteger();
+
+    @Override
+    public Integer load(String s) throws Exception {
+        return Integer.valueOf( s );
+    }
+
+    @Override
+    public Map<String, Integer> loadAll(Iterable<? extends String> keys) throws Exception {
+        bulkLoads.incrementAndGet();
+        final Map<String, Integer> values = new HashMap<>();
+        for ( final String key : keys )
+            values.put( key, load( key ) );
+        return values;
+    }
+}
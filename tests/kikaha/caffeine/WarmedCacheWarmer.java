@@ -0,0 +1,15 @@
+package kikaha.caffeine;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+@Singleton @Named("warmed")
+public class WarmedCacheWarmer implements CacheWarmer<String> {
+
+    @Override
+    public Stream<String> keysToPreload() {
+        return IntStream.range( 0, 250 ).mapToObj( String::valueOf );
+    }
+}
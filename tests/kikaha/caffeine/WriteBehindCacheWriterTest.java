@@ -0,0 +1,118 @@
+package kikaha.caffeine;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link WriteBehindCacheWriter}.
+ */
+public class WriteBehindCacheWriterTest {
+
+    final RecordingBatchCacheWriter batchWriter = new RecordingBatchCacheWriter();
+
+    @Test( timeout = 3000 )
+    public void willCoalesceWritesAndFlushOnlyTheLastValues() throws Exception {
+        final WriteBehindCacheWriter<String, Integer> writer = new WriteBehindCacheWriter<>( "test", batchWriter, 100, 10_000, 1000 );
+        for ( int i = 0; i < 1000; i++ )
+            writer.write( String.valueOf( i % 10 ), i );
+        writer.close();
+
+        assertEquals( 10, batchWriter.data.size() );
+        assertEquals( Integer.valueOf( 999 ), batchWriter.data.get( "9" ) );
+        assertTrue( batchWriter.writtenEntries.get() < 1000 );
+    }
+
+    @Test( timeout = 3000 )
+    public void willFlushDeletesButKeepEvictedEntriesOnTheBackingStore() throws Exception {
+        final WriteBehindCacheWriter<String, Integer> writer = new WriteBehindCacheWriter<>( "test", batchWriter, 100, 10, 1000 );
+        writer.write( "a", 1 );
+        writer.write( "b", 2 );
+        writer.delete( "a", 1, RemovalCause.EXPLICIT );
+        writer.delete( "b", 2, RemovalCause.SIZE );
+        writer.close();
+
+        assertFalse( batchWriter.data.containsKey( "a" ) );
+        assertEquals( Integer.valueOf( 2 ), batchWriter.data.get( "b" ) );
+    }
+
+    @Test( timeout = 3000 )
+    public void willFlushOnceTheMaxDelayIsReached() throws Exception {
+        final WriteBehindCacheWriter<String, Integer> writer = new WriteBehindCacheWriter<>( "test", batchWriter, 100, 50, 1000 );
+        writer.write( "a", 1 );
+
+        while ( !batchWriter.data.containsKey( "a" ) )
+            Thread.sleep( 10 );
+        writer.close();
+    }
+
+    @Test( timeout = 3000 )
+    public void willRetryFailedBatches() throws Exception {
+        batchWriter.failures.set( 2 );
+        final WriteBehindCacheWriter<String, Integer> writer = new WriteBehindCacheWriter<>( "test", batchWriter, 100, 10, 1000, 3, 1 );
+        writer.write( "a", 1 );
+        writer.close();
+
+        assertEquals( Integer.valueOf( 1 ), batchWriter.data.get( "a" ) );
+        assertEquals( 0, writer.failedWrites() );
+    }
+
+    @Test( timeout = 3000 )
+    public void willCountTheEntriesItGaveUpWriting() throws Exception {
+        batchWriter.failures.set( Integer.MAX_VALUE );
+        final WriteBehindCacheWriter<String, Integer> writer = new WriteBehindCacheWriter<>( "test", batchWriter, 100, 10, 1000, 2, 1 );
+        writer.write( "a", 1 );
+        writer.write( "b", 2 );
+        writer.close();
+
+        assertTrue( batchWriter.data.isEmpty() );
+        assertEquals( 2, writer.failedWrites() );
+    }
+
+    @Test( timeout = 3000 )
+    public void willWriteThroughTheChangesMadeOnceClosed() throws Exception {
+        final WriteBehindCacheWriter<String, Integer> writer = new WriteBehindCacheWriter<>( "test", batchWriter, 100, 10_000, 1000 );
+        writer.write( "a", 1 );
+        writer.close();
+
+        writer.write( "b", 2 );
+        assertEquals( Integer.valueOf( 2 ), batchWriter.data.get( "b" ) );
+        writer.delete( "a", 1, RemovalCause.EXPLICIT );
+        assertFalse( batchWriter.data.containsKey( "a" ) );
+    }
+
+    @Test( timeout = 3000 )
+    public void willCountTheChangesItGaveUpWritingOnceClosed() throws Exception {
+        final WriteBehindCacheWriter<String, Integer> writer = new WriteBehindCacheWriter<>( "test", batchWriter, 100, 10, 1000, 1, 1 );
+        writer.close();
+
+        batchWriter.failures.set( Integer.MAX_VALUE );
+        writer.write( "a", 1 );
+        assertEquals( 1, writer.failedWrites() );
+    }
+
+    static class RecordingBatchCacheWriter implements BatchCacheWriter<String, Integer> {
+
+        final Map<String, Integer> data = new ConcurrentHashMap<>();
+        final AtomicInteger writtenEntries = new AtomicInteger(), failures = new AtomicInteger();
+
+        @Override
+        public void writeAll( Map<String, Integer> entries ) throws IOException {
+            if ( failures.getAndDecrement() > 0 )
+                throw new IOException( "Backing store unavailable" );
+            writtenEntries.addAndGet( entries.size() );
+            data.putAll( entries );
+        }
+
+        @Override
+        public void deleteAll( Collection<String> keys ) {
+            keys.forEach( data::remove );
+        }
+    }
+}